@@ -0,0 +1,128 @@
+package javamorph;
+
+import java.io.*;
+import java.awt.image.*;
+import java.util.concurrent.*;
+import javax.imageio.*;
+
+/**
+ * File belongs to javamorph (Merging of human-face-pictures).
+ * Copyright (C) 2009 - 2010  Claus Wimmer
+ * See file ".../help/COPYING" for details!
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA * 
+ *
+ * @version 1.5
+ * <br/>
+ * @author claus.erhard.wimmer@googlemail.com
+ * <br/>
+ * Program: JavaMorph.
+ * <br/>
+ * Class: CArtifactWriter.
+ * <br/>
+ * License: GPLv2.
+ * <br/>
+ * Description: Writes debug artifacts (pictures) in the background.
+ * <br/>
+ * Hint: Jobs are processed one after another by a single daemon thread, so
+ * the morph process never waits for encoding. Pending jobs are finished on
+ * shutdown.
+ */
+public class CArtifactWriter implements Runnable{
+    /** Jobs waiting to be processed. */
+    private static final LinkedBlockingQueue<Runnable> queue = 
+        new LinkedBlockingQueue<Runnable>();
+    /** Number of jobs posted but not yet finished. */
+    private static int pending;
+    /** Start the writer thread & ensure pending jobs are done on shutdown. */
+    static{
+        Thread t = new Thread(new CArtifactWriter(), "Artifact writer");
+        t.setDaemon(true);
+        t.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(){
+            public void run(){
+                flush();
+            }
+        });
+    }
+    /**
+     * Post one job to be done in the background.
+     * @param job The job.
+     */
+    public static void post(Runnable job){
+        synchronized(queue){
+            ++pending;
+        }
+        queue.add(job);
+    }
+    /**
+     * Post one picture to be written to file in the background. The
+     * picture must not be modified afterwards.
+     * @param image Picture to write.
+     * @param format Informal name of the picture's file format.
+     * @param f File to write to.
+     */
+    public static void write(
+            final RenderedImage image, 
+            final String format, 
+            final File f){
+        post(new Runnable(){
+            public void run(){
+                try{
+                    ImageIO.write(image, format, f);
+                }catch(Exception e){
+                    System.err.println(e.getMessage());
+                    e.printStackTrace();
+                }
+            }
+        });
+    }
+    /**
+     * Wait until all posted jobs are done.
+     */
+    public static void flush(){
+        synchronized(queue){
+            while(0 < pending){
+                try{
+                    queue.wait();
+                }catch(InterruptedException e){
+                    return;
+                }
+            }
+        }
+    }
+    /**
+     * Thread API. Process the jobs one after another.
+     */
+    public void run(){
+        while(true){
+            try{
+                Runnable job = queue.take();
+                try{
+                    job.run();
+                }catch(Exception e){
+                    System.err.println(e.getMessage());
+                    e.printStackTrace();
+                }
+                synchronized(queue){
+                    --pending;
+                    queue.notifyAll();
+                }
+            }catch(InterruptedException e){
+                return;
+            }
+        }
+    }
+}
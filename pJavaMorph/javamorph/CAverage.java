@@ -0,0 +1,569 @@
+package javamorph;
+
+import java.awt.*;
+import java.awt.image.*;
+import java.io.*;
+import java.util.*;
+import javax.imageio.*;
+import javax.swing.*;
+
+/**
+ * File belongs to javamorph (Merging of human-face-pictures).
+ * Copyright (C) 2009 - 2010  Claus Wimmer
+ * See file ".../help/COPYING" for details!
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA * 
+ *
+ * @version 1.5
+ * <br/>
+ * @author claus.erhard.wimmer@googlemail.com
+ * <br/>
+ * Program: JavaMorph.
+ * <br/>
+ * Class: CAverage.
+ * <br/>
+ * License: GPLv2.
+ * <br/>
+ * Description: Average of any number of pictures, each with its own mesh &
+ * polygon, blended by a weight vector.
+ * <br/>
+ * Hint: The weighted average of the meshes is triangulated once. Each 
+ * output pixel is calculated in one pass over all pictures. Inside its
+ * polygon a picture counts 256 times as much as outside of it, so the 
+ * faces dominate the background. Exactly two pictures are blended by the
+ * weight table of CMorphOperator instead, like left & right picture of 
+ * the morph. Pixels are sampled once at their centers: Supersampling, 
+ * mipmaps & the render mode of the configuration don't apply.
+ */
+public class CAverage {
+    /** Application's main class. */
+    private static CMain parent;
+    /** Progress bar to show the number of read pictures. */
+    private static CProgress progress;
+    /** <code>true</code> if the user has aborted the average. */
+    private static volatile boolean f_break;
+    /** Input pictures, clip ratio as alpha. */
+    private CSource sources[];
+    /** Mesh of each picture, all of the same size. */
+    private Vector<Vector<Point>> meshes;
+    /** File name of each picture without extension. */
+    private String names[];
+    /** Width of the output pictures. */
+    private int width;
+    /** Height of the output pictures. */
+    private int height;
+    /**
+     * Constructor.
+     * @param sources Input pictures, clip ratio as alpha.
+     * @param meshes Mesh of each picture, all of the same size.
+     * @param names Name of each picture.
+     * @param width Width of the output pictures.
+     * @param height Height of the output pictures.
+     */
+    public CAverage(CSource sources[], Vector<Vector<Point>> meshes, 
+            String names[], int width, int height){
+        if(2 > sources.length){
+            throw new IllegalArgumentException("At least two pictures.");
+        }
+        for(Vector<Point> mesh: meshes){
+            if(mesh.size() != meshes.get(0).size()){
+                throw new IllegalArgumentException(
+                    "Meshes differ in the number of points.");
+            }
+        }
+        this.sources = sources;
+        this.meshes = meshes;
+        this.names = names;
+        this.width = width;
+        this.height = height;
+    }
+    /**
+     * Read the pictures of a directory, sorted by file name. Each picture 
+     * <code>NAME.jpg</code> comes with the mesh <code>NAME.msh</code> & the
+     * polygon <code>NAME.pol</code>. Each picture is decoded & its clip 
+     * matrix generated once.
+     * @param path Directory path.
+     * @return The pictures.
+     * @throws Exception If the pictures can't be read or their meshes don't
+     * fit.
+     */
+    public static CAverage load(String path) throws Exception{
+        return load(path, false);
+    }
+    /**
+     * Read the pictures of a directory, see <code>load(String)</code>.
+     * @param path Directory path.
+     * @param ui <code>true</code> to show the progress & to stop reading
+     * when the user aborts the average.
+     * @return The pictures, <code>null</code> if aborted.
+     * @throws Exception If the pictures can't be read or their meshes don't
+     * fit.
+     */
+    private static CAverage load(String path, boolean ui) throws Exception{
+        File f_dir = new File(path);
+        /* Work directories of older versions lack the directory. */
+        f_dir.mkdirs();
+        File dir[] = f_dir.listFiles();
+        if(null == dir){
+            throw new FileNotFoundException(path);
+        }
+        Arrays.sort(dir);
+        Vector<CSource> sources = new Vector<CSource>();
+        Vector<Vector<Point>> meshes = new Vector<Vector<Point>>();
+        Vector<String> names = new Vector<String>();
+        int width = 0, height = 0;
+        for(int i = 0; i < dir.length; ++i){
+            File f = dir[i];
+            if(ui){
+                if(f_break){
+                    return null;
+                }
+                /* The last step is the rendering. */
+                progress.setProgress(i, 0, dir.length + 1);
+            }
+            if(f.isDirectory()){
+                continue;
+            }
+            /* Mesh, polygon & weights file are no pictures. */
+            BufferedImage image = ImageIO.read(f);
+            if(null == image){
+                continue;
+            }
+            String name = f.getName();
+            if(0 < name.lastIndexOf('.')){
+                name = name.substring(0, name.lastIndexOf('.'));
+            }
+            Vector<Point> mesh = new Vector<Point>();
+            double clip[][] = 
+                new double[image.getWidth()][image.getHeight()];
+            /* Mesh & polygon are loaded the same way as left & right. */
+            new CMeshDecorator(mesh, image, new File(path + name + ".msh"));
+            new CPolygonDecorator(new Vector<Point>(), image, 
+                new File(path + name + ".pol"), clip).genClip();
+            sources.add(new CSource(image, clip, CConfig.EDGE_MODE, 
+                CConfig.SOURCE_LAYOUT, CConfig.FILTER_MODE, 1));
+            meshes.add(mesh);
+            names.add(name);
+            width = Math.max(width, image.getWidth());
+            height = Math.max(height, image.getHeight());
+        }
+        return new CAverage(sources.toArray(new CSource[0]), meshes, 
+            names.toArray(new String[0]), width, height);
+    }
+    /**
+     * Average the pictures of the average directory into the average
+     * output file. Runs in a thread of its own, parallel to the modal 
+     * progress bar.
+     * @param parent Application's main class.
+     * @param progress Progress bar.
+     */
+    public static void average(CMain parent, CProgress progress){
+        CAverage.parent = parent;
+        CAverage.progress = progress;
+        f_break = false;
+        new Thread(new Runnable(){
+            public void run(){
+                try{
+                    BufferedImage image = average();
+                    /* Keep the old output file after an abort. */
+                    if(null != image){
+                        ImageIO.write(image, "jpg", 
+                            new File(CStrings.AVERAGE_OUTPUT));
+                    }
+                    CAverage.progress.close();
+                }catch(Exception e){
+                    System.err.println(e.getMessage());
+                    e.printStackTrace();
+                    CAverage.progress.close();
+                    JOptionPane.showMessageDialog(CAverage.parent, 
+                        "Can't average the pictures. See also console output!");
+                }
+            }
+        }).start();
+    }
+    /**
+     * Enable abort of the average forced by user.
+     */
+    public static void doBreak(){
+        f_break = true;
+    }
+    /**
+     * Average the pictures of the average directory. The weight of each
+     * picture is read from the weights file, <code>1.0</code> if not given
+     * there.
+     * @return The averaged picture, <code>null</code> if aborted.
+     * @throws Exception If the pictures can't be read or their meshes don't
+     * fit.
+     */
+    public static BufferedImage average() throws Exception{
+        /* No progress bar without the user interface. */
+        boolean ui = null != progress;
+        CAverage pictures = load(CStrings.AVERAGEDIR, ui);
+        if(null == pictures){
+            return null;
+        }
+        Properties props = new Properties();
+        File f_weights = new File(CStrings.AVERAGE_WEIGHTS);
+        if(f_weights.exists()){
+            FileInputStream in = new FileInputStream(f_weights);
+            props.load(in);
+            in.close();
+        }
+        double weights[] = new double[pictures.size()];
+        for(int k = 0; k < weights.length; ++k){
+            weights[k] = Double.parseDouble
+                (props.getProperty(pictures.getName(k), "1.0"));
+        }
+        BufferedImage image = pictures.render
+            (pictures.triangulate(weights), weights, true, ui);
+        return ui && f_break ? null : image;
+    }
+    /**
+     * Provide two neighbored pictures, for example one segment of a chain.
+     * Both share the decoded pictures & meshes with this instance.
+     * @param k Index of the first picture.
+     * @return Pictures k & k + 1, blended like left & right picture.
+     */
+    public CAverage getPair(int k){
+        Vector<Vector<Point>> pair = new Vector<Vector<Point>>();
+        pair.add(meshes.get(k));
+        pair.add(meshes.get(k + 1));
+        return new CAverage(new CSource[]{sources[k], sources[k + 1]}, 
+            pair, new String[]{names[k], names[k + 1]}, width, height);
+    }
+    /**
+     * Get function.
+     * @return Number of pictures.
+     */
+    public int size(){
+        return this.sources.length;
+    }
+    /**
+     * Get function.
+     * @param k Index of the picture.
+     * @return File name of the picture without extension.
+     */
+    public String getName(int k){
+        return this.names[k];
+    }
+    /**
+     * Triangulate the weighted average of the meshes.
+     * @param weights Weight of each picture, not negative.
+     * @return Point indices of each triangle.
+     */
+    public Vector<int[]> triangulate(double weights[]){
+        Vector<Point> mesh = getMesh(normalize(weights));
+        /* The triangulation shares its data with the left & right mesh. */
+        synchronized(CMorphOperator.class){
+            return CTriangulation.triangulate(mesh);
+        }
+    }
+    /**
+     * Render the weighted average of the pictures.
+     * @param indices Triangulation, see <code>triangulate()</code>.
+     * @param weights Weight of each picture, not negative.
+     * @param parallel <code>true</code> to share the rows between all 
+     * processors, <code>false</code> to render within the caller's thread.
+     * @return The averaged picture.
+     */
+    public BufferedImage render
+            (Vector<int[]> indices, double weights[], boolean parallel){
+        return render(indices, weights, parallel, false);
+    }
+    /**
+     * Render the weighted average of the pictures.
+     * @param indices Triangulation, see <code>triangulate()</code>.
+     * @param weights Weight of each picture, not negative.
+     * @param parallel <code>true</code> to share the rows between all 
+     * processors, <code>false</code> to render within the caller's thread.
+     * @param ui <code>true</code> to stop rendering when the user aborts 
+     * the average.
+     * @return The averaged picture, incomplete if aborted.
+     */
+    private BufferedImage render(Vector<int[]> indices, double weights[], 
+            boolean parallel, boolean ui){
+        double w[] = normalize(weights);
+        BufferedImage image = 
+            new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Job job = new Job(getMesh(w), indices, w, ui,
+            ((DataBufferInt)image.getRaster().getDataBuffer()).getData());
+        if(parallel){
+            /* Each thread renders its own rows. */
+            CParallel.run(height, job);
+        }else{
+            job.run(0, height);
+        }
+        return image;
+    }
+    /**
+     * Scale the weights to a sum of one.
+     * @param weights Weight of each picture, not negative.
+     * @return Scaled weights.
+     */
+    private double[] normalize(double weights[]){
+        if(weights.length != sources.length){
+            throw new IllegalArgumentException("One weight per picture.");
+        }
+        double sum = 0.0, result[] = new double[weights.length];
+        for(double w: weights){
+            if(0.0 > w){
+                throw new IllegalArgumentException("Negative weight.");
+            }
+            sum += w;
+        }
+        if(0.0 >= sum){
+            throw new IllegalArgumentException("All weights are zero.");
+        }
+        for(int k = 0; k < weights.length; ++k){
+            result[k] = weights[k] / sum;
+        }
+        return result;
+    }
+    /**
+     * Weighted average of the meshes.
+     * @param weights Weight of each picture, sum of one.
+     * @return Averaged mesh.
+     */
+    private Vector<Point> getMesh(double weights[]){
+        Vector<Point> mesh = new Vector<Point>();
+        for(int i = 0; i < meshes.get(0).size(); ++i){
+            double x = 0.0, y = 0.0;
+            for(int k = 0; k < sources.length; ++k){
+                Point p = meshes.get(k).get(i);
+                x += p.x * weights[k];
+                y += p.y * weights[k];
+            }
+            mesh.add(new Point((int)x, (int)y));
+        }
+        return mesh;
+    }
+    /**
+     * Copy the corners of all triangles into a flat array.
+     * @param mesh Mesh points.
+     * @param indices Point indices of each triangle.
+     * @return Corners, <code>CTransformTable.STRIDE</code> entries per 
+     * triangle.
+     */
+    private static int[] getPoints(Vector<Point> mesh, Vector<int[]> indices){
+        int points[] = new int[CTransformTable.STRIDE * indices.size()];
+        int k = 0;
+        for(int c[]: indices){
+            for(int i: c){
+                points[k++] = mesh.get(i).x;
+                points[k++] = mesh.get(i).y;
+            }
+        }
+        return points;
+    }
+    /**
+     * Key of an edge, independent of its direction.
+     * @param i First mesh point index.
+     * @param j Second mesh point index.
+     * @return Key.
+     */
+    private static Long edgeKey(int i, int j){
+        return ((long)Math.min(i, j) << 32) | Math.max(i, j);
+    }
+    /**
+     * Rendering of one averaged picture. Pictures of weight zero are 
+     * skipped.
+     */
+    private class Job implements IRange{
+        /** Pictures to blend. */
+        private CSource used[];
+        /** Weight of each picture, fixed point (CMorphOperator). */
+        private int weights[];
+        /** 
+         * Weight table of the morph for exactly two pictures, otherwise 
+         * <code>null</code>.
+         */
+        private int lut[];
+        /** Corners of the averaged triangles, fixed point (CRasterizer). */
+        private int result[];
+        /** Matrixes from result to each picture, one array per picture. */
+        private double trafos[][];
+        /** Edges of each triangle which always own their pixels. */
+        private int inclusive[];
+        /** <code>false</code> if a triangle has no area. */
+        private boolean valid[];
+        /** Pixels of the averaged picture. */
+        private int pixels[];
+        /** <code>true</code> to stop when the user aborts the average. */
+        private boolean ui;
+        /**
+         * Constructor. Calculate the corners & matrixes of all triangles.
+         * @param mesh Averaged mesh.
+         * @param indices Point indices of each triangle.
+         * @param w Weight of each picture, sum of one.
+         * @param ui <code>true</code> to stop when the user aborts the 
+         * average.
+         * @param pixels Pixels of the averaged picture.
+         */
+        public Job(Vector<Point> mesh, Vector<int[]> indices, double w[], 
+                boolean ui, int pixels[]){
+            int 
+                n = indices.size(), 
+                stride = CTransformTable.STRIDE, 
+                m = 0;
+            for(double f: w){
+                m += 0.0 < f ? 1 : 0;
+            }
+            /* 
+             * Two pictures blend like left & right picture of the morph. Of
+             * exactly two pictures both are used, even if one weight is 
+             * zero, like the morph at ratio 0 & 1.
+             */
+            boolean 
+                both = 2 == w.length,
+                pair = both || 2 == m;
+            double ratio = 0.0;
+            if(both){
+                m = 2;
+            }
+            this.pixels = pixels;
+            this.ui = ui;
+            used = new CSource[m];
+            weights = new int[m];
+            trafos = new double[m][];
+            result = getPoints(mesh, indices);
+            for(int i = 0; i < result.length; ++i){
+                /* Pixel centers of result & output picture coincide. */
+                result[i] = CRasterizer.fix(result[i]);
+            }
+            valid = new boolean[n];
+            Arrays.fill(valid, true);
+            for(int k = 0, s = 0; k < w.length; ++k){
+                if(0.0 == w[k] && !both){
+                    continue;
+                }
+                /* Weight of the right picture of a pair. */
+                ratio = w[k];
+                used[s] = sources[k];
+                weights[s] = (int)(w[k] * CMorphOperator.WEIGHT_ONE + 0.5);
+                trafos[s] = new double[stride * n];
+                int source[] = getPoints(meshes.get(k), indices);
+                for(int t = 0; t < n; ++t){
+                    valid[t] &= CGeo.getTrafo(source, result, stride * t, 
+                        trafos[s], CRasterizer.SUB_ONE);
+                }
+                ++s;
+            }
+            if(pair){
+                lut = CMorphOperator.getWeights(ratio);
+            }
+            /* Edges without a valid neighbor belong to the mesh border. */
+            HashMap<Long, Integer> first = new HashMap<Long, Integer>();
+            inclusive = new int[n];
+            for(int t = 0; t < n; ++t){
+                if(!valid[t]){
+                    continue;
+                }
+                int c[] = indices.get(t);
+                for(int e = 0; e < 3; ++e){
+                    Long key = edgeKey(c[e], c[(e + 1) % 3]);
+                    Integer k = first.remove(key);
+                    if(null == k){
+                        first.put(key, 3 * t + e);
+                        inclusive[t] |= 1 << e;
+                    }else{
+                        /* Second triangle at this edge. */
+                        inclusive[k / 3] &= ~(1 << (k % 3));
+                        inclusive[t] &= ~(1 << e);
+                    }
+                }
+            }
+        }
+        /**
+         * Thread API. Render all triangles within some rows.
+         * @param from First row.
+         * @param to Row after the last one.
+         */
+        public void run(int from, int to){
+            CRasterizer rasterizer = new CRasterizer(width, height, false);
+            int 
+                n = used.length,
+                u[] = new int[n],
+                v[] = new int[n],
+                du[] = new int[n],
+                dv[] = new int[n];
+            for(int t = 0; t < valid.length && !(ui && f_break); ++t){
+                int k = CTransformTable.STRIDE * t;
+                /* Spans within the rows of this thread only. */
+                if(!valid[t] || !rasterizer.raster(result[k], result[k + 1], 
+                    result[k + 2], result[k + 3], result[k + 4], 
+                    result[k + 5], inclusive[t], from, to)){
+                    continue;
+                }
+                int 
+                    lo[] = rasterizer.getXLo(),
+                    hi[] = rasterizer.getXHi(),
+                    y_max = rasterizer.getYMax();
+                for(int s = 0; s < n; ++s){
+                    du[s] = CSource.fix(trafos[s][k]);
+                    dv[s] = CSource.fix(trafos[s][k + 3]);
+                }
+                for(int y = rasterizer.getYMin(); y <= y_max; ++y){
+                    for(int s = 0; s < n; ++s){
+                        double m[] = trafos[s];
+                        u[s] = CSource.fix
+                            (lo[y] * m[k] + y * m[k + 1] + m[k + 2]);
+                        v[s] = CSource.fix
+                            (lo[y] * m[k + 3] + y * m[k + 4] + m[k + 5]);
+                    }
+                    for(int x = lo[y], i = y * width + x; x <= hi[y]; 
+                        ++x, ++i){
+                        pixels[i] = pixel(u, v, du, dv);
+                    }
+                }
+            }
+        }
+        /**
+         * Blend one output pixel of all pictures & step to the next column.
+         * @param u Fixed point column of each picture.
+         * @param v Fixed point row of each picture.
+         * @param du Step of the column per output pixel.
+         * @param dv Step of the row per output pixel.
+         * @return RGB pixel.
+         */
+        private int pixel(int u[], int v[], int du[], int dv[]){
+            int sum = 0, r = 0, g = 0, b = 0, p, q, f;
+            if(null != lut){
+                p = used[0].sample(u[0], v[0]);
+                q = used[1].sample(u[1], v[1]);
+                for(int s = 0; s < 2; ++s){
+                    u[s] += du[s];
+                    v[s] += dv[s];
+                }
+                return CMorphOperator.blend
+                    (p, q, lut[((p >>> 24) << 8) | (q >>> 24)]);
+            }
+            for(int s = 0; s < used.length; ++s){
+                p = used[s].sample(u[s], v[s]);
+                u[s] += du[s];
+                v[s] += dv[s];
+                /* Weight times (1 + clip ratio), scaled to avoid overflow. */
+                f = (weights[s] * (1 + (p >>> 24))) >> 8;
+                sum += f;
+                r += f * ((p >> 16) & 0xff);
+                g += f * ((p >> 8) & 0xff);
+                b += f * (p & 0xff);
+            }
+            sum = Math.max(1, sum);
+            int half = sum >> 1;
+            return 0xff000000 | (r + half) / sum << 16 | 
+                (g + half) / sum << 8 | (b + half) / sum;
+        }
+    }
+}
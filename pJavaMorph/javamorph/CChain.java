@@ -0,0 +1,134 @@
+package javamorph;
+
+import java.io.*;
+import java.awt.image.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import javax.imageio.*;
+import javax.swing.*;
+
+/**
+ * File belongs to javamorph (Merging of human-face-pictures).
+ * Copyright (C) 2009 - 2010  Claus Wimmer
+ * See file ".../help/COPYING" for details!
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA * 
+ *
+ * @version 1.5
+ * <br/>
+ * @author claus.erhard.wimmer@googlemail.com
+ * <br/>
+ * Program: JavaMorph.
+ * <br/>
+ * Class: CChain.
+ * <br/>
+ * License: GPLv2.
+ * <br/>
+ * Description: Morph a chain of key pictures A -> B -> C ... as one job 
+ * into a continuous numbering of output pictures.
+ * <br/>
+ * Hint: Each key picture is decoded & its clip matrix generated once, each
+ * segment between two key pictures is triangulated once. The output 
+ * pictures of all segments are shared between the processors, so no 
+ * processor waits at the end of a segment. The pictures are rendered by 
+ * CAverage, which blends like the morph, but ignores SUPERSAMPLING, MIPMAP
+ * & RENDER_MODE.
+ */
+public class CChain implements Runnable{
+    /** Application's main class. */
+    private static CMain parent;
+    /** Progress bar to show the number of written pictures. */
+    private static CProgress progress;
+    /** <code>true</code> if the user has aborted the chain. */
+    private static volatile boolean f_break;
+    /**
+     * Initialize the chain before starting the thread.
+     * @param parent Application's main class.
+     * @param progress Progress bar.
+     */
+    public static void chain(CMain parent, CProgress progress){
+        CChain.parent = parent;
+        CChain.progress = progress;
+    }
+    /**
+     * Enable abort of the chain forced by user.
+     */
+    public static void doBreak(){
+        f_break = true;
+    }
+    /**
+     * Thread API. Render the key pictures of the chain directory.
+     */
+    public void run(){
+        f_break = false;
+        try{
+            render(CStrings.CHAINDIR, CConfig.NUM_OF_MORPH_STEPS);
+            progress.close();
+        }catch(Exception e){
+            System.err.println(e.getMessage());
+            e.printStackTrace();
+            progress.close();
+            JOptionPane.showMessageDialog(parent, 
+                    "Can't render the chain. Please see console output!");
+        }
+    }
+    /**
+     * Render a chain into the output directory.
+     * @param path Directory of the key pictures, meshes & polygons, see
+     * <code>CAverage.load()</code>. Sorted by file name.
+     * @param steps Number of steps per segment.
+     * @throws Exception If the pictures can't be read or written.
+     */
+    public static void render(String path, final int steps) throws Exception{
+        final CAverage keys = CAverage.load(path);
+        final int 
+            segments = keys.size() - 1,
+            frames = segments * steps + 1;
+        final Vector<CAverage> pairs = new Vector<CAverage>();
+        final Vector<Vector<int[]>> triangulations = 
+            new Vector<Vector<int[]>>();
+        for(int s = 0; s < segments; ++s){
+            /* Each segment blends like left & right picture. */
+            pairs.add(keys.getPair(s));
+            /* 50% mesh of the segment, like left & right. */
+            triangulations.add
+                (pairs.get(s).triangulate(new double[]{0.5, 0.5}));
+        }
+        final AtomicInteger done = new AtomicInteger();
+        /* Each thread renders & writes its own output pictures. */
+        CParallel.run(frames, new IRange(){
+            public void run(int from, int to){
+                for(int f = from; f < to && !f_break; ++f){
+                    int s = Math.min(f / steps, segments - 1);
+                    double ratio = (double)(f - s * steps) / steps;
+                    BufferedImage image = pairs.get(s).render(
+                        triangulations.get(s), 
+                        new double[]{1.0 - ratio, ratio}, false);
+                    try{
+                        ImageIO.write(image, CFrameCache.FORMAT, 
+                            new File(CStrings.getOutput(f)));
+                    }catch(IOException e){
+                        throw new RuntimeException(e);
+                    }
+                    /* No progress bar without the user interface. */
+                    if(null != progress){
+                        progress.setProgress
+                            (done.incrementAndGet(), 0, frames);
+                    }
+                }
+            }
+        });
+    }
+}
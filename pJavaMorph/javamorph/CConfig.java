@@ -56,6 +56,36 @@ public class CConfig extends JDialog implements Runnable, WindowListener{
     public static final int EDIT_POLYGON_SUB = 5;
     /** User is moving polygon points with the GUI. */
     public static final int EDIT_POLYGON_OFF = 6;
+    /** Smooth the polygon by circles around its contour. */
+    public static final int SMOOTH_CIRCLE = 0;
+    /** Smooth the polygon by repeated box blurs (running sums). */
+    public static final int SMOOTH_BOX = 1;
+    /** Pixels outside an input picture repeat the nearest border pixel. */
+    public static final int EDGE_CLAMP = 0;
+    /** Pixels outside an input picture mirror the picture at its border. */
+    public static final int EDGE_MIRROR = 1;
+    /** Pixels outside an input picture are black & not clipped. */
+    public static final int EDGE_TRANSPARENT = 2;
+    /** Render each triangle's pixels in turn. */
+    public static final int RENDER_TRIANGLES = 0;
+    /** Render triangle indexes first, then the pixels row by row. */
+    public static final int RENDER_VISIBILITY = 1;
+    /** Input pictures are stored row by row. */
+    public static final int LAYOUT_LINEAR = 0;
+    /** Input pictures are stored in small tiles, each in Z-order. */
+    public static final int LAYOUT_TILED = 1;
+    /** Sample the nearest input pixel. */
+    public static final int FILTER_NEAREST = 0;
+    /** Interpolate between 2 x 2 input pixels. */
+    public static final int FILTER_BILINEAR = 1;
+    /** Interpolate between 4 x 4 input pixels. */
+    public static final int FILTER_BICUBIC = 2;
+    /** Maximum number of morph steps. */
+    public static final int MAX_MORPH_STEPS = 999;
+    /** Maximum smooth radius of the polygon. */
+    public static final int MAX_SMOOTH_RADIUS = 999;
+    /** Maximum samples per row & column of the pixels near the edges. */
+    public static final int MAX_SUPERSAMPLING = 4;
     /** Rows of the mesh. Count of both windows is identical. */
     public static int ROWS_OF_MESH = 10;
     /** Columns of the mesh. Count of both windows is identical. */
@@ -66,12 +96,41 @@ public class CConfig extends JDialog implements Runnable, WindowListener{
     public static int NUM_OF_MORPH_STEPS = 5;
     /** Smooth radius of the polygon. Fuzzy polygon clipping done. */
     public static int SMOOTH_RADIUS = 19;
+    /** Smooth strategy of the polygon. Circle or box blur. */
+    public static int SMOOTH_MODE = SMOOTH_CIRCLE;
+    /** If <code>1</code> then debug pictures are written to the debug dir. */
+    public static int DEBUG_OUTPUT = 1;
+    /** 
+     * Treatment of transformed points outside of an input picture. Black
+     * by default, like the skipped pixels of former versions.
+     */
+    public static int EDGE_MODE = EDGE_TRANSPARENT;
+    /** Order of the pixel rendering. Triangle by triangle or row by row. */
+    public static int RENDER_MODE = RENDER_TRIANGLES;
+    /** Number of steps rendered together, triangle by triangle. */
+    public static int BATCH_FRAMES = 1;
+    /** Order of the input picture's pixels in memory. */
+    public static int SOURCE_LAYOUT = LAYOUT_LINEAR;
+    /** Interpolation between the input picture's pixels. */
+    public static int FILTER_MODE = FILTER_NEAREST;
+    /** Samples per row & column of the pixels near triangle edges. */
+    public static int SUPERSAMPLING = 1;
+    /** Sample from a pyramid of the input pictures if not <code>0</code>. */
+    public static int MIPMAP = 0;
+    /** Ratio of the preview picture in percent, 0 = left, 100 = right. */
+    public static int PREVIEW_RATIO = 50;
+    /** Reuse rendered steps from the cache directory if not <code>0</code>. */
+    public static int FRAME_CACHE = 0;
+    /** Memory of the single picture cache in megabytes. */
+    public static int RENDER_CACHE = 64;
     /** Size of the marker points for mesh & polygon. */
     public static int MARK_SIZE = 7;
     /** Collection of points which represent the left picture's mesh. */
     public static final Vector<Point> left_mesh = new Vector<Point>();
     /** Collection of points which represent the right picture's mesh. */
     public static final Vector<Point> right_mesh = new Vector<Point>();
+    /** Held while the points of both meshes are changed or copied. */
+    public static final Object mesh_lock = new Object();
     /** Collection of points which represent the left picture's polygon.*/
     public static final Vector<Point> left_polygon = new Vector<Point>();
     /** Collection of points which represent the right picture's polygon. */
@@ -97,6 +156,8 @@ public class CConfig extends JDialog implements Runnable, WindowListener{
     /** Current result triangulation. */
     public static final Vector<CTriangle> result_triangles
         = new Vector<CTriangle>();
+    /** Mesh point indexes of each triangle's corners. Same order as above. */
+    public static final Vector<int[]> triangle_indices = new Vector<int[]>();
     /** Property object. Can load and store the numerical data from file. */
     private Properties props = new Properties();
     /** Parent JFrame to enable modal behavior. */
@@ -134,7 +195,7 @@ public class CConfig extends JDialog implements Runnable, WindowListener{
             "Num of morph steps : ",
             NUM_OF_MORPH_STEPS,
             1,
-            999,
+            MAX_MORPH_STEPS,
             true
         );
     /** Edit field for the property with the same name. */
@@ -142,7 +203,103 @@ public class CConfig extends JDialog implements Runnable, WindowListener{
             "Smooth radius : ",
             SMOOTH_RADIUS,
             1,
-            999,
+            MAX_SMOOTH_RADIUS,
+            true
+    );
+    /** Edit field for the property with the same name. */
+    private CEditField smooth_mode = new CEditField(
+            "Smooth mode (0 = circle, 1 = box) : ",
+            SMOOTH_MODE,
+            SMOOTH_CIRCLE,
+            SMOOTH_BOX,
+            true
+    );
+    /** Edit field for the property with the same name. */
+    private CEditField debug_output = new CEditField(
+            "Debug output (0 = off, 1 = on) : ",
+            DEBUG_OUTPUT,
+            0,
+            1,
+            true
+    );
+    /** Edit field for the property with the same name. */
+    private CEditField edge_mode = new CEditField(
+            "Edge mode (0 = clamp, 1 = mirror, 2 = black) : ",
+            EDGE_MODE,
+            EDGE_CLAMP,
+            EDGE_TRANSPARENT,
+            true
+    );
+    /** Edit field for the property with the same name. */
+    private CEditField render_mode = new CEditField(
+            "Render mode (0 = triangles, 1 = visibility buffer) : ",
+            RENDER_MODE,
+            RENDER_TRIANGLES,
+            RENDER_VISIBILITY,
+            true
+    );
+    /** Edit field for the property with the same name. */
+    private CEditField batch_frames = new CEditField(
+            "Frames per batch : ",
+            BATCH_FRAMES,
+            1,
+            64,
+            true
+    );
+    /** Edit field for the property with the same name. */
+    private CEditField source_layout = new CEditField(
+            "Source layout (0 = rows, 1 = tiles) : ",
+            SOURCE_LAYOUT,
+            LAYOUT_LINEAR,
+            LAYOUT_TILED,
+            true
+    );
+    /** Edit field for the property with the same name. */
+    private CEditField filter_mode = new CEditField(
+            "Filter (0 = nearest, 1 = bilinear, 2 = bicubic) : ",
+            FILTER_MODE,
+            FILTER_NEAREST,
+            FILTER_BICUBIC,
+            true
+    );
+    /** Edit field for the property with the same name. */
+    private CEditField supersampling = new CEditField(
+            "Edge supersampling (1 = off, n = n x n samples) : ",
+            SUPERSAMPLING,
+            1,
+            MAX_SUPERSAMPLING,
+            true
+    );
+    /** Edit field for the property with the same name. */
+    private CEditField mipmap = new CEditField(
+            "Mipmaps (0 = off, 1 = on) : ",
+            MIPMAP,
+            0,
+            1,
+            true
+    );
+    /** Edit field for the property with the same name. */
+    private CEditField preview_ratio = new CEditField(
+            "Preview ratio (0 = left, 100 = right) : ",
+            PREVIEW_RATIO,
+            0,
+            100,
+            true
+    );
+    /** Edit field for the property with the same name. */
+    private CEditField frame_cache = new CEditField(
+            "Frame cache (0 = off, 1 = on) : ",
+            FRAME_CACHE,
+            0,
+            1,
+            true
+    );
+    /** Edit field for the property with the same name. */
+    private CEditField render_cache = new CEditField(
+            "Render cache (MB) : ",
+            RENDER_CACHE,
+            0,
+            4096,
             true
     );
     /** Size of cursor and also point marks. */
@@ -209,12 +366,24 @@ public class CConfig extends JDialog implements Runnable, WindowListener{
         this.right = right;
         this.parent = parent;
         /* Initialize dialog. */
-        this.getContentPane().setLayout(new GridLayout(7, 1));
+        this.getContentPane().setLayout(new GridLayout(19, 1));
         this.getContentPane().add(this.num_of_morph_steps);
         this.getContentPane().add(this.rows_of_mesh);
         this.getContentPane().add(this.columns_of_mesh);
         this.getContentPane().add(this.points_of_polygon);
         this.getContentPane().add(this.smooth_radius);
+        this.getContentPane().add(this.smooth_mode);
+        this.getContentPane().add(this.debug_output);
+        this.getContentPane().add(this.edge_mode);
+        this.getContentPane().add(this.render_mode);
+        this.getContentPane().add(this.batch_frames);
+        this.getContentPane().add(this.source_layout);
+        this.getContentPane().add(this.filter_mode);
+        this.getContentPane().add(this.supersampling);
+        this.getContentPane().add(this.mipmap);
+        this.getContentPane().add(this.preview_ratio);
+        this.getContentPane().add(this.frame_cache);
+        this.getContentPane().add(this.render_cache);
         this.getContentPane().add(this.mark_size);
         this.getContentPane().add(this.working_dir);
         this.getContentPane().setSize(this.getContentPane().getPreferredSize());
@@ -240,6 +409,30 @@ public class CConfig extends JDialog implements Runnable, WindowListener{
                 SMOOTH_RADIUS = Integer.parseInt(s);
                 s = props.getProperty("MARK_SIZE");
                 MARK_SIZE = Integer.parseInt(s);
+                s = props.getProperty("SMOOTH_MODE", "" + SMOOTH_MODE);
+                SMOOTH_MODE = Integer.parseInt(s);
+                s = props.getProperty("DEBUG_OUTPUT", "" + DEBUG_OUTPUT);
+                DEBUG_OUTPUT = Integer.parseInt(s);
+                s = props.getProperty("EDGE_MODE", "" + EDGE_MODE);
+                EDGE_MODE = Integer.parseInt(s);
+                s = props.getProperty("RENDER_MODE", "" + RENDER_MODE);
+                RENDER_MODE = Integer.parseInt(s);
+                s = props.getProperty("BATCH_FRAMES", "" + BATCH_FRAMES);
+                BATCH_FRAMES = Integer.parseInt(s);
+                s = props.getProperty("SOURCE_LAYOUT", "" + SOURCE_LAYOUT);
+                SOURCE_LAYOUT = Integer.parseInt(s);
+                s = props.getProperty("FILTER_MODE", "" + FILTER_MODE);
+                FILTER_MODE = Integer.parseInt(s);
+                s = props.getProperty("SUPERSAMPLING", "" + SUPERSAMPLING);
+                SUPERSAMPLING = Integer.parseInt(s);
+                s = props.getProperty("MIPMAP", "" + MIPMAP);
+                MIPMAP = Integer.parseInt(s);
+                s = props.getProperty("PREVIEW_RATIO", "" + PREVIEW_RATIO);
+                PREVIEW_RATIO = Integer.parseInt(s);
+                s = props.getProperty("FRAME_CACHE", "" + FRAME_CACHE);
+                FRAME_CACHE = Integer.parseInt(s);
+                s = props.getProperty("RENDER_CACHE", "" + RENDER_CACHE);
+                RENDER_CACHE = Integer.parseInt(s);
             }catch(Exception e){
                 System.err.println(e.getMessage());
                 e.printStackTrace();
@@ -253,6 +446,18 @@ public class CConfig extends JDialog implements Runnable, WindowListener{
             props.setProperty("NUM_OF_MORPH_STEPS", "" + NUM_OF_MORPH_STEPS);
             props.setProperty("SMOOTH_RADIUS", "" + SMOOTH_RADIUS);
             props.setProperty("MARK_SIZE", "" + MARK_SIZE);
+            props.setProperty("SMOOTH_MODE", "" + SMOOTH_MODE);
+            props.setProperty("DEBUG_OUTPUT", "" + DEBUG_OUTPUT);
+            props.setProperty("EDGE_MODE", "" + EDGE_MODE);
+            props.setProperty("RENDER_MODE", "" + RENDER_MODE);
+            props.setProperty("BATCH_FRAMES", "" + BATCH_FRAMES);
+            props.setProperty("SOURCE_LAYOUT", "" + SOURCE_LAYOUT);
+            props.setProperty("FILTER_MODE", "" + FILTER_MODE);
+            props.setProperty("SUPERSAMPLING", "" + SUPERSAMPLING);
+            props.setProperty("MIPMAP", "" + MIPMAP);
+            props.setProperty("PREVIEW_RATIO", "" + PREVIEW_RATIO);
+            props.setProperty("FRAME_CACHE", "" + FRAME_CACHE);
+            props.setProperty("RENDER_CACHE", "" + RENDER_CACHE);
         }
         this.addWindowListener(this);
     }
@@ -282,6 +487,18 @@ public class CConfig extends JDialog implements Runnable, WindowListener{
             props.setProperty("NUM_OF_MORPH_STEPS", "" + NUM_OF_MORPH_STEPS);
             props.setProperty("SMOOTH_RADIUS", "" + SMOOTH_RADIUS);
             props.setProperty("MARK_SIZE", "" + MARK_SIZE);
+            props.setProperty("SMOOTH_MODE", "" + SMOOTH_MODE);
+            props.setProperty("DEBUG_OUTPUT", "" + DEBUG_OUTPUT);
+            props.setProperty("EDGE_MODE", "" + EDGE_MODE);
+            props.setProperty("RENDER_MODE", "" + RENDER_MODE);
+            props.setProperty("BATCH_FRAMES", "" + BATCH_FRAMES);
+            props.setProperty("SOURCE_LAYOUT", "" + SOURCE_LAYOUT);
+            props.setProperty("FILTER_MODE", "" + FILTER_MODE);
+            props.setProperty("SUPERSAMPLING", "" + SUPERSAMPLING);
+            props.setProperty("MIPMAP", "" + MIPMAP);
+            props.setProperty("PREVIEW_RATIO", "" + PREVIEW_RATIO);
+            props.setProperty("FRAME_CACHE", "" + FRAME_CACHE);
+            props.setProperty("RENDER_CACHE", "" + RENDER_CACHE);
             props.store(new FileOutputStream(p), CStrings.PROG);
         }catch(Exception e){
             System.err.println(e.getMessage());
@@ -306,6 +523,18 @@ public class CConfig extends JDialog implements Runnable, WindowListener{
         ROWS_OF_MESH = rows_of_mesh.getNumber();
         POINTS_OF_POLYGON = points_of_polygon.getNumber();
         SMOOTH_RADIUS = smooth_radius.getNumber();
+        SMOOTH_MODE = smooth_mode.getNumber();
+        DEBUG_OUTPUT = debug_output.getNumber();
+        EDGE_MODE = edge_mode.getNumber();
+        RENDER_MODE = render_mode.getNumber();
+        BATCH_FRAMES = batch_frames.getNumber();
+        SOURCE_LAYOUT = source_layout.getNumber();
+        FILTER_MODE = filter_mode.getNumber();
+        SUPERSAMPLING = supersampling.getNumber();
+        MIPMAP = mipmap.getNumber();
+        PREVIEW_RATIO = preview_ratio.getNumber();
+        FRAME_CACHE = frame_cache.getNumber();
+        RENDER_CACHE = render_cache.getNumber();
         NUM_OF_MORPH_STEPS = num_of_morph_steps.getNumber();
         MARK_SIZE = mark_size.getNumber();
         if(msh){
@@ -316,6 +545,8 @@ public class CConfig extends JDialog implements Runnable, WindowListener{
             left.initPolygon();
             right.initPolygon();
         }
+        /* Any value may affect the preview. */
+        left.getParent().edited(true);
         parent.repaint();
     }
     /** Event API. */
@@ -334,6 +565,18 @@ public class CConfig extends JDialog implements Runnable, WindowListener{
         rows_of_mesh.setValue(ROWS_OF_MESH);
         points_of_polygon.setValue(POINTS_OF_POLYGON);
         smooth_radius.setValue(SMOOTH_RADIUS);
+        smooth_mode.setValue(SMOOTH_MODE);
+        debug_output.setValue(DEBUG_OUTPUT);
+        edge_mode.setValue(EDGE_MODE);
+        render_mode.setValue(RENDER_MODE);
+        batch_frames.setValue(BATCH_FRAMES);
+        source_layout.setValue(SOURCE_LAYOUT);
+        filter_mode.setValue(FILTER_MODE);
+        supersampling.setValue(SUPERSAMPLING);
+        mipmap.setValue(MIPMAP);
+        preview_ratio.setValue(PREVIEW_RATIO);
+        frame_cache.setValue(FRAME_CACHE);
+        render_cache.setValue(RENDER_CACHE);
         num_of_morph_steps.setValue(NUM_OF_MORPH_STEPS);
         mark_size.setValue(MARK_SIZE);
         working_dir.setValue(CStrings.WORKDIR);
@@ -174,6 +174,12 @@ public class CFrame extends JLabel {
     public void genClip(){
         this.dpolygon.genClip();
     }
+    /**
+     * Write the clip matrix into the debug directory.
+     */
+    public void debug(){
+        this.dpolygon.debug();
+    }
     /**
      * Scale a screen point to a picture point.
      * @param p Point in screen resolution units.
@@ -0,0 +1,314 @@
+package javamorph;
+
+import java.awt.*;
+import java.awt.image.*;
+import java.io.*;
+import java.lang.reflect.*;
+import java.security.*;
+import java.util.*;
+
+/**
+ * File belongs to javamorph (Merging of human-face-pictures).
+ * Copyright (C) 2009 - 2010  Claus Wimmer
+ * See file ".../help/COPYING" for details!
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA * 
+ *
+ * @version 1.5
+ * <br/>
+ * @author claus.erhard.wimmer@googlemail.com
+ * <br/>
+ * Program: JavaMorph.
+ * <br/>
+ * Class: CFrameCache.
+ * <br/>
+ * License: GPLv2.
+ * <br/>
+ * Description: Cache of rendered steps, addressed by their content.
+ * <br/>
+ * Hint: The name of each cached file is a digest of everything the step 
+ * depends on: Pictures, meshes, polygons, configuration, ratio & size. 
+ * Unchanged steps of a new morph are linked or copied from the cache 
+ * instead of being rendered. The least recently used steps are deleted 
+ * if the cache directory exceeds its size.
+ */
+public class CFrameCache {
+    /** File format of the cached steps. */
+    public static final String FORMAT = "jpg";
+    /** Maximum size of the cache directory in bytes. */
+    public static final long MAX_SIZE = 512L << 20;
+    /** Digest of both input pictures, <code>null</code> until needed. */
+    private static byte pictures[];
+    /** Left picture the digest belongs to. */
+    private static BufferedImage digest_left;
+    /** Right picture the digest belongs to. */
+    private static BufferedImage digest_right;
+    /** Size of the cache directory in bytes. */
+    private static long size;
+    /** 
+     * Digest of everything except the ratio, <code>null</code> if the 
+     * cache is switched off.
+     */
+    private static byte base[];
+    /**
+     * Calculate the digest of all data which is equal for all steps of one
+     * morph.
+     * @param width Width of the output pictures.
+     * @param height Height of the output pictures.
+     */
+    public static void begin(int width, int height){
+        base = null;
+        if(0 == CConfig.FRAME_CACHE){
+            return;
+        }
+        try{
+            new File(CStrings.CACHEDIR).mkdirs();
+            trim();
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            if((null == pictures) 
+                    || (digest_left != CConfig.left_image)
+                    || (digest_right != CConfig.right_image)){
+                /* Digest kept until other pictures are loaded. */
+                add(md, CConfig.left_image);
+                add(md, CConfig.right_image);
+                pictures = md.digest();
+                digest_left = CConfig.left_image;
+                digest_right = CConfig.right_image;
+            }
+            md.update(pictures);
+            add(md, CConfig.left_mesh);
+            add(md, CConfig.right_mesh);
+            add(md, CConfig.left_polygon);
+            add(md, CConfig.right_polygon);
+            add(md, CConfig.SMOOTH_RADIUS);
+            add(md, CConfig.SMOOTH_MODE);
+            add(md, CConfig.EDGE_MODE);
+            add(md, CConfig.RENDER_MODE);
+            add(md, CConfig.FILTER_MODE);
+            add(md, CConfig.SUPERSAMPLING);
+            add(md, CConfig.MIPMAP);
+            add(md, width);
+            add(md, height);
+            md.update(FORMAT.getBytes("UTF-8"));
+            base = md.digest();
+        }catch(Exception e){
+            System.err.println(e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    /**
+     * Link or copy a cached step to the output file if it exists.
+     * @param ratio Ratio of the step.
+     * @param out Output file.
+     * @return <code>true</code> if the step has been found.
+     */
+    public static boolean fetch(double ratio, File out){
+        File f = getFile(ratio);
+        if(null == f || !f.exists()){
+            return false;
+        }
+        try{
+            /* Mark as recently used. */
+            f.setLastModified(System.currentTimeMillis());
+            link(f, out);
+            return true;
+        }catch(Exception e){
+            System.err.println(e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+    /**
+     * Link or copy a rendered step into the cache.
+     * @param ratio Ratio of the step.
+     * @param out Output file of the step.
+     */
+    public static void store(double ratio, File out){
+        File f = getFile(ratio);
+        if(null == f){
+            return;
+        }
+        try{
+            /* Rename at last, so a broken copy is never found. */
+            File temp = new File(f.getPath() + ".tmp");
+            long old = f.length();
+            link(out, temp);
+            if(temp.renameTo(f)){
+                size += f.length() - old;
+            }else{
+                temp.delete();
+            }
+            if(MAX_SIZE < size){
+                trim();
+            }
+        }catch(Exception e){
+            System.err.println(e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    /**
+     * Compose the cache file name of one step.
+     * @param ratio Ratio of the step.
+     * @return Cache file, <code>null</code> if the cache is switched off.
+     */
+    private static File getFile(double ratio){
+        if(null == base){
+            return null;
+        }
+        try{
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            md.update(base);
+            long bits = Double.doubleToLongBits(ratio);
+            add(md, (int)(bits >>> 32));
+            add(md, (int)bits);
+            StringBuilder name = new StringBuilder();
+            for(byte b: md.digest()){
+                name.append(Integer.toHexString((b & 0xff) | 0x100), 1, 3);
+            }
+            return new File(CStrings.CACHEDIR + name + '.' + FORMAT);
+        }catch(Exception e){
+            System.err.println(e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+    }
+    /**
+     * Delete the least recently used steps until the cache directory is 
+     * small enough again. Leave some space, so not each step stored 
+     * lists the directory.
+     */
+    private static void trim(){
+        File files[] = new File(CStrings.CACHEDIR).listFiles();
+        if(null == files){
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>(){
+            public int compare(File a, File b){
+                long ta = a.lastModified(), tb = b.lastModified();
+                return (ta < tb) ? -1 : ((ta > tb) ? 1 : 0);
+            }
+        });
+        size = 0;
+        for(File f: files){
+            size += f.length();
+        }
+        for(int i = 0; (i < files.length) && (MAX_SIZE < size * 4 / 3); ++i){
+            long n = files[i].length();
+            if(files[i].delete()){
+                size -= n;
+            }
+        }
+    }
+    /**
+     * Add one number to a digest.
+     * @param md Digest.
+     * @param v Number.
+     */
+    private static void add(MessageDigest md, int v){
+        md.update((byte)(v >>> 24));
+        md.update((byte)(v >>> 16));
+        md.update((byte)(v >>> 8));
+        md.update((byte)v);
+    }
+    /**
+     * Add the number & coordinates of some points to a digest.
+     * @param md Digest.
+     * @param points Points.
+     */
+    private static void add(MessageDigest md, Vector<Point> points){
+        add(md, points.size());
+        for(Point p: points){
+            add(md, p.x);
+            add(md, p.y);
+        }
+    }
+    /**
+     * Add the size & pixels of a picture to a digest.
+     * @param md Digest.
+     * @param image Picture.
+     */
+    private static void add(MessageDigest md, BufferedImage image){
+        int 
+            w = image.getWidth(), 
+            h = image.getHeight(), 
+            row[] = new int[w];
+        byte bytes[] = new byte[4 * w];
+        add(md, w);
+        add(md, h);
+        add(md, image.getType());
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        if((buffer instanceof DataBufferByte) && (1 == buffer.getNumBanks())){
+            /* Usual for loaded JPEG pictures: All samples at once. */
+            md.update(((DataBufferByte)buffer).getData());
+            return;
+        }
+        for(int y = 0; y < h; ++y){
+            image.getRGB(0, y, w, 1, row, 0, w);
+            for(int x = 0, i = 0; x < w; ++x){
+                bytes[i++] = (byte)(row[x] >>> 24);
+                bytes[i++] = (byte)(row[x] >>> 16);
+                bytes[i++] = (byte)(row[x] >>> 8);
+                bytes[i++] = (byte)row[x];
+            }
+            md.update(bytes);
+        }
+    }
+    /**
+     * Hard link a file if the file system & the Java runtime support it,
+     * otherwise copy it. Looked up by reflection, linking needs Java 7.
+     * @param in Source file.
+     * @param out Target file, replaced if it exists.
+     * @throws IOException If reading or writing fails.
+     */
+    private static void link(File in, File out) throws IOException{
+        /* Never write through an older link into a cached step. */
+        out.delete();
+        try{
+            Class<?> 
+                files = Class.forName("java.nio.file.Files"),
+                path = Class.forName("java.nio.file.Path");
+            Method to_path = File.class.getMethod("toPath");
+            files.getMethod("createLink", path, path).invoke(
+                null, to_path.invoke(out), to_path.invoke(in));
+            return;
+        }catch(Exception e){
+            /* Old runtime, other file system or no links at all. */
+        }
+        copy(in, out);
+    }
+    /**
+     * Copy a file.
+     * @param in Source file.
+     * @param out Target file.
+     * @throws IOException If reading or writing fails.
+     */
+    private static void copy(File in, File out) throws IOException{
+        InputStream is = new FileInputStream(in);
+        try{
+            OutputStream os = new FileOutputStream(out);
+            try{
+                byte buffer[] = new byte[65536];
+                int n;
+                while(-1 != (n = is.read(buffer))){
+                    os.write(buffer, 0, n);
+                }
+            }finally{
+                os.close();
+            }
+        }finally{
+            is.close();
+        }
+    }
+}
@@ -1,7 +1,5 @@
 package javamorph;
 
-import java.awt.*;
-
 /**
  * File belongs to javamorph (Merging of human-face-pictures).
  * Copyright (C) 2009 - 2010  Claus Wimmer
@@ -38,71 +36,44 @@ import java.awt.*;
  */
 public class CGeo {
     /**
-     * Provide reverse transformation matrix from one result triangle to one
-     * input picture triangle. All three points of the two triangles
-     * correspond.
-     * @param origin_ One triangle of the source picture. 
-     * @param result One triangle of the result picture.
-     * @return Floating point transformation matrix. Indexes are row / column.
+     * Provide the reverse transformation matrix of one triangle within flat
+     * arrays of corners (x0, y0, x1, y1, x2, y2).
+     * @param origin_ Corners of the source triangles.
+     * @param result Corners of the result triangles, in 1 / unit pixels.
+     * @param k Index of the triangle's first corner coordinate.
+     * @param trafo Receives a_11, a_12, a_13, a_21, a_22, a_23 at index k.
+     * The matrix expects result points in pixels.
+     * @param unit Fixed point value of one result pixel.
+     * @return <code>false</code> if the result triangle is degenerated.
      */
-    public static CTransform getTrafo(CTriangle origin_, CTriangle result){
-        /* Initialize helper variables. */
-        int
-            x1_ = origin_.getPoints()[0].x,
-            x2_ = origin_.getPoints()[1].x,
-            x3_ = origin_.getPoints()[2].x,
-            y1_ = origin_.getPoints()[0].y,
-            y2_ = origin_.getPoints()[1].y,
-            y3_ = origin_.getPoints()[2].y,
-            x1 = result.getPoints()[0].x,
-            x2 = result.getPoints()[1].x,
-            x3 = result.getPoints()[2].x,
-            y1 = result.getPoints()[0].y,
-            y2 = result.getPoints()[1].y,
-            y3 = result.getPoints()[2].y;
-        CTransform trafo = new CTransform();
-        double t, u, d;
-        /* Try variants depending on which points are orthogonal. */
-        if(x1 != x3){
-            d = (double)x1 - x3;
-            t = ((double)x1 - x2) / d;
-            u = ((double)y1 - y2) - ((double)y1 - y3) * t;
-            trafo.a_12 = (((double)x1_ - x2_) - ((double)x1_ - x3_) * t) / u; 
-            trafo.a_22 = (((double)y1_ - y2_) - ((double)y1_ - y3_) * t) / u;
-            trafo.a_11 = (((double)x1_ - x3_) - trafo.a_12 * ((double)y1 - y3)) 
-                / d;
-            trafo.a_21 = (((double)y1_ - y3_) - trafo.a_22 * ((double)y1 - y3)) 
-                / d;
-        }else{
-            d = (double)y1 - y3;
-            t = ((double)y1 - y2) / d;
-            u = ((double)x1 - x2) - ((double)x1 - x3) * t;
-            trafo.a_11 = (((double)x1_ - x2_) - ((double)x1_ - x3_) * t) / u; 
-            trafo.a_21 = (((double)y1_ - y2_) - ((double)y1_ - y3_) * t) / u;
-            trafo.a_12 = (((double)x1_ - x3_) - trafo.a_11 * ((double)x1 - x3)) 
-                / d;
-            trafo.a_22 = (((double)y1_ - y3_) - trafo.a_21 * ((double)x1 - x3)) 
-                / d;
+    public static boolean getTrafo(int origin_[], int result[], int k, 
+            double trafo[], int unit){
+        /* Edge vectors of the result triangle (fixed point). */
+        long
+            x2 = result[k + 2] - result[k],
+            y2 = result[k + 3] - result[k + 1],
+            x3 = result[k + 4] - result[k],
+            y3 = result[k + 5] - result[k + 1],
+            d = x2 * y3 - x3 * y2;
+        /* Degenerated result triangle => no inverse transformation. */
+        if(0 == d){
+            return false;
         }
-        trafo.a_13 = (double)x1_ - trafo.a_11 * x1 - trafo.a_12 * y1;
-        trafo.a_23 = (double)y1_ - trafo.a_21 * x1 - trafo.a_22 * y1;
-        return trafo;
-    }
-    /**
-     * Transform one point from the result matrix to the one point of the input
-     * matrix.
-     * @param result Point of the result picture.
-     * @param trafo Transformation matrix.
-     * @return Corresponding point of the input picture.
-     */
-    public static Point getOrigin_(Point result, CTransform trafo){
-        Point origin_ = new Point();
-        /* Transform x. */
-        origin_.x = (int)
-            (result.x * trafo.a_11 + result.y * trafo.a_12 + trafo.a_13);
-        /* Transform y. */
-        origin_.y = (int)
-            (result.x * trafo.a_21 + result.y * trafo.a_22 + trafo.a_23);
-        return origin_;
+        /* Edge vectors of the source triangle. */
+        double
+            x2_ = origin_[k + 2] - origin_[k],
+            y2_ = origin_[k + 3] - origin_[k + 1],
+            x3_ = origin_[k + 4] - origin_[k],
+            y3_ = origin_[k + 5] - origin_[k + 1];
+        /* Cramer's rule. */
+        trafo[k] = (x2_ * y3 - x3_ * y2) / d * unit;
+        trafo[k + 1] = (x3_ * x2 - x2_ * x3) / d * unit;
+        trafo[k + 2] = origin_[k] - 
+            (trafo[k] * result[k] + trafo[k + 1] * result[k + 1]) / unit;
+        trafo[k + 3] = (y2_ * y3 - y3_ * y2) / d * unit;
+        trafo[k + 4] = (y3_ * x2 - y2_ * x3) / d * unit;
+        trafo[k + 5] = origin_[k + 1] - 
+            (trafo[k + 3] * result[k] + trafo[k + 4] * result[k + 1]) / unit;
+        return true;
     }
 }
@@ -75,6 +75,8 @@ public class CMain extends JPanel
     private CProgress progress = new CProgress(frame);
     /** Configuration dialog with file storing functionality. */
     private CConfig config = new CConfig(frame, left, right);
+    /** Non modal preview of one step. */
+    private CPreview preview = new CPreview(frame, left, right);
     /**
      *  Constructor. Laying out the applicaiton window.
      */
@@ -124,6 +126,37 @@ public class CMain extends JPanel
     public void showConfigDialog(){
         config.open();
     }
+    /**
+     * Show the preview dialog.
+     */
+    public void showPreviewDialog(){
+        preview.open();
+    }
+    /**
+     * Called after each edit of a mesh, polygon or the configuration. 
+     * Render the preview again.
+     * @param clip <code>true</code> if a polygon or the sampling settings
+     * have changed, <code>false</code> if only a mesh has changed.
+     */
+    public void edited(boolean clip){
+        CMorphEngine.clear();
+        /* Stop the preview's current picture first, it holds the operator. */
+        CMorphOperator.cancel(true);
+        /* The shown preview rebuilds the clip matrixes itself. */
+        if(!preview.restart(clip)){
+            CMorphOperator.invalidate(clip);
+        }
+    }
+    /**
+     * Called while a mesh point is dragged. Render the preview again.
+     * @param index Index of the mesh point.
+     */
+    public void moved(int index){
+        CMorphEngine.clear();
+        /* Even if the preview is hidden & doesn't update anything. */
+        CMorphOperator.invalidate(false);
+        preview.moved(index);
+    }
     /** Event API. */
     public void windowActivated(WindowEvent e){}
     /** Event API. */
@@ -197,12 +230,22 @@ public class CMain extends JPanel
     public void morph(){
         /* Store system time to calculate the duration. */
         long time = System.currentTimeMillis();
-        /* Generate left smoothed clip matrix. */
-        left.genClip();
-        /** Generate right smoothed clip matrix. */
-        right.genClip();
-        /* Split picture area into triangles. */
-        CTriangulation.triangulate();
+        /* Wait until the preview has finished its current picture. */
+        synchronized(CMorphOperator.class){
+            /* Generate left smoothed clip matrix. */
+            left.genClip();
+            /** Generate right smoothed clip matrix. */
+            right.genClip();
+            /* Split picture area into triangles. */
+            CTriangulation.triangulate();
+            CMorphOperator.invalidate(true);
+            /* Debug pictures of the batch only, not of each preview. */
+            if(0 != CConfig.DEBUG_OUTPUT){
+                left.debug();
+                right.debug();
+                CTriangulation.debug();
+            }
+        }
         /* Show wait cursor. */
         this.setCursor(new Cursor(Cursor.WAIT_CURSOR));
         /* Initialize morphing the pictures. */
@@ -219,6 +262,67 @@ public class CMain extends JPanel
         /* Print duration to the console. */
         System.out.println("Duration = " + time + " seconds.");
     }
+    /**
+     * Render the chain of key pictures. Show the progress bar during 
+     * rendering.
+     */
+    public void chain(){
+        long time = System.currentTimeMillis();
+        this.setCursor(new Cursor(Cursor.WAIT_CURSOR));
+        CChain.chain(this, progress);
+        new Thread(new CChain()).start();
+        /* Blocking made here! */
+        progress.open();
+        this.setCursor(new Cursor(Cursor.DEFAULT_CURSOR));
+        time = (System.currentTimeMillis() - time) / 1000;
+        System.out.println("Duration = " + time + " seconds.");
+    }
+    /**
+     * Render the current pictures with all parameter combinations of the
+     * sweep file. Show the progress bar during rendering.
+     */
+    public void sweep(){
+        long time = System.currentTimeMillis();
+        this.setCursor(new Cursor(Cursor.WAIT_CURSOR));
+        CMorphOperator.morph(this, progress);
+        CSweep.sweep(this, progress, left, right);
+        new Thread(new CSweep()).start();
+        /* Blocking made here! */
+        progress.open();
+        this.setCursor(new Cursor(Cursor.DEFAULT_CURSOR));
+        time = (System.currentTimeMillis() - time) / 1000;
+        System.out.println("Duration = " + time + " seconds.");
+    }
+    /**
+     * Morph the left picture sequence into the right one. Show the 
+     * progress bar during rendering.
+     */
+    public void sequence(){
+        long time = System.currentTimeMillis();
+        this.setCursor(new Cursor(Cursor.WAIT_CURSOR));
+        CSequence.sequence(this, progress);
+        new Thread(new CSequence()).start();
+        /* Blocking made here! */
+        progress.open();
+        this.setCursor(new Cursor(Cursor.DEFAULT_CURSOR));
+        time = (System.currentTimeMillis() - time) / 1000;
+        System.out.println("Duration = " + time + " seconds.");
+    }
+    /**
+     * Average the pictures of the average directory into one output 
+     * picture. Show the progress bar during rendering.
+     */
+    public void average(){
+        long time = System.currentTimeMillis();
+        this.setCursor(new Cursor(Cursor.WAIT_CURSOR));
+        /* Averaging runs parallel to the modal progress bar. */
+        CAverage.average(this, progress);
+        /* Blocking made here! */
+        progress.open();
+        this.setCursor(new Cursor(Cursor.DEFAULT_CURSOR));
+        time = (System.currentTimeMillis() - time) / 1000;
+        System.out.println("Duration = " + time + " seconds.");
+    }
     /**
      * Get function.
      * @return Top level window JFrame.
@@ -86,6 +86,22 @@ public class CMeshDecorator
         parent.addMouseListener(this);
         parent.addMouseMotionListener(this);
     }
+    /**
+     * Constructor without display for batch jobs. Nothing is saved after
+     * shutdown.
+     * 
+     * @param mesh Receives the points of the mesh.
+     * @param image Picture of the own side.
+     * @param f_mesh File to load the mesh from, grid mesh if missing or
+     * <code>null</code>.
+     */
+    public CMeshDecorator(Vector<Point> mesh, BufferedImage image, File f_mesh){
+        this.mesh = mesh;
+        this.image = image;
+        this.f_mesh = f_mesh;
+        if(null != f_mesh && f_mesh.exists())load();
+        else init();
+    }
     /**
      * Ensure that the cursor is situated inside the bounds of the mesh while
      * drawing.
@@ -141,8 +157,11 @@ public class CMeshDecorator
             Point p = new Point(e.getX(), e.getY()), q = mesh.get(index);
             parent.scalePoint(p);
             /* Manipulate coordinates of current mesh point. */
-            q.x = p.x;
-            q.y = p.y;
+            synchronized(CConfig.mesh_lock){
+                q.x = p.x;
+                q.y = p.y;
+            }
+            parent.getParent().moved(index);
             parent.repaint();
         }
     }
@@ -201,7 +220,9 @@ public class CMeshDecorator
     public void load(){
         try{
             /* Make the collection empty. */
-            mesh.clear();
+            synchronized(CConfig.mesh_lock){
+                mesh.clear();
+            }
             /* Provide the file. */
             FileInputStream in = new FileInputStream(f_mesh);
             BufferedReader read= 
@@ -216,7 +237,9 @@ public class CMeshDecorator
                 p.y = Integer.parseInt(st.nextToken());
                 p.x = Math.min(p.x, image.getWidth() - 1);
                 p.y = Math.min(p.y, image.getHeight() - 1);
-                mesh.add(p);
+                synchronized(CConfig.mesh_lock){
+                    mesh.add(p);
+                }
             }
             read.close();
         }catch(Exception e){
@@ -234,16 +257,18 @@ public class CMeshDecorator
      */
     public void init(){
         int x, y;
-        /* Clear the point collection. */
-        mesh.clear();
-        /* For a number of rows. */
-        for(int c = 0; c <= CConfig.COLUMNS_OF_MESH; ++c){
-            /* For a number of columns. */
-            for(int r = 0; r <= CConfig.ROWS_OF_MESH; ++r){
-                /* Scale & add the point depending on row & column. */
-                x = ((image.getWidth() - 1) * c) / CConfig.COLUMNS_OF_MESH;
-                y = ((image.getHeight() - 1) * r) / CConfig.ROWS_OF_MESH;
-                mesh.add(new Point(x, y));
+        synchronized(CConfig.mesh_lock){
+            /* Clear the point collection. */
+            mesh.clear();
+            /* For a number of rows. */
+            for(int c = 0; c <= CConfig.COLUMNS_OF_MESH; ++c){
+                /* For a number of columns. */
+                for(int r = 0; r <= CConfig.ROWS_OF_MESH; ++r){
+                    /* Scale & add the point depending on row & column. */
+                    x = ((image.getWidth() - 1) * c) / CConfig.COLUMNS_OF_MESH;
+                    y = ((image.getHeight() - 1) * r) / CConfig.ROWS_OF_MESH;
+                    mesh.add(new Point(x, y));
+                }
             }
         }
     }
@@ -255,14 +280,20 @@ public class CMeshDecorator
             switch(CConfig.edit_state){
                 /* Add one point. */
                 case CConfig.EDIT_MESH_ADD:
-                    CConfig.left_mesh.add(new Point(pos.x, pos.y));
-                    CConfig.right_mesh.add(new Point(pos.x, pos.y));
+                    synchronized(CConfig.mesh_lock){
+                        CConfig.left_mesh.add(new Point(pos.x, pos.y));
+                        CConfig.right_mesh.add(new Point(pos.x, pos.y));
+                    }
+                    parent.getParent().edited(false);
                     break;
                 /* Delete one point if there are enough remaining points. */
                 case CConfig.EDIT_MESH_SUB:
                     if(CConfig.left_mesh.size() > 4){
-                        CConfig.left_mesh.remove(index);
-                        CConfig.right_mesh.remove(index);
+                        synchronized(CConfig.mesh_lock){
+                            CConfig.left_mesh.remove(index);
+                            CConfig.right_mesh.remove(index);
+                        }
+                        parent.getParent().edited(false);
                     }
                     break;
             }
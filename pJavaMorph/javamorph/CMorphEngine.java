@@ -0,0 +1,193 @@
+package javamorph;
+
+import java.awt.image.*;
+import java.util.*;
+
+/**
+ * File belongs to javamorph (Merging of human-face-pictures).
+ * Copyright (C) 2009 - 2010  Claus Wimmer
+ * See file ".../help/COPYING" for details!
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA * 
+ *
+ * @version 1.5
+ * <br/>
+ * @author claus.erhard.wimmer@googlemail.com
+ * <br/>
+ * Program: JavaMorph.
+ * <br/>
+ * Class: CMorphEngine.
+ * <br/>
+ * License: GPLv2.
+ * <br/>
+ * Description: Library entry rendering single steps of any ratio & size,
+ * without touching the output directory.
+ * <br/>
+ * Hint: Recently rendered pictures are kept in a cache, limited by the
+ * memory they use. The least recently used picture is dropped first. Warp
+ * & dissolve may run as separate stages: The warped pictures of a step are
+ * cached, so other color ratios of the same shape are cheap.
+ */
+public class CMorphEngine {
+    /** Cached pictures, least recently used first. */
+    private static final LinkedHashMap<String, BufferedImage> cache = 
+        new LinkedHashMap<String, BufferedImage>(16, 0.75f, true);
+    /** Memory of all cached pictures in bytes. */
+    private static long bytes;
+    /** Number of changes of the input data, to drop outdated pictures. */
+    private static int generation;
+    /**
+     * Generate clip matrixes & triangulation from the current meshes & 
+     * polygons. Call after each change of the input data.
+     * @param left Left picture's display.
+     * @param right Right picture's display.
+     */
+    public static void prepare(CFrame left, CFrame right){
+        synchronized(CMorphOperator.class){
+            left.genClip();
+            right.genClip();
+            CTriangulation.triangulate();
+            CMorphOperator.invalidate(true);
+        }
+        clear();
+    }
+    /**
+     * Drop all cached pictures, because the input data has changed.
+     */
+    public static synchronized void clear(){
+        cache.clear();
+        bytes = 0;
+        ++generation;
+    }
+    /**
+     * Render one step or fetch it from the cache.
+     * @param ratio <code>0.0</code> = left picture, <code>1.0</code> = 
+     * right picture.
+     * @param width Width of the picture.
+     * @param height Height of the picture.
+     * @return The picture. Shared with the cache, must not be modified.
+     */
+    public static BufferedImage render(double ratio, int width, int height){
+        String key = "M " + getKey(ratio, width, height);
+        int g;
+        synchronized(CMorphEngine.class){
+            BufferedImage image = cache.get(key);
+            if(null != image){
+                return image;
+            }
+            g = generation;
+        }
+        BufferedImage image = 
+            CMorphOperator.render(ratio, width, height, null);
+        synchronized(CMorphEngine.class){
+            /* Don't keep a picture of outdated data. */
+            if(g == generation){
+                put(key, image);
+                trim();
+            }
+        }
+        return image;
+    }
+    /**
+     * Render one step with separate ratios for shape & colors.
+     * @param ratio Shape, <code>0.0</code> = left mesh, <code>1.0</code> = 
+     * right mesh.
+     * @param dissolve Colors, <code>0.0</code> = left picture, 
+     * <code>1.0</code> = right picture.
+     * @param width Width of the picture.
+     * @param height Height of the picture.
+     * @return The picture.
+     */
+    public static BufferedImage render
+            (double ratio, double dissolve, int width, int height){
+        BufferedImage images[] = warp(ratio, width, height);
+        return CMorphOperator.dissolve(images[0], images[1], dissolve);
+    }
+    /**
+     * Warp both input pictures to the shape of one step or fetch them from
+     * the cache.
+     * @param ratio <code>0.0</code> = left mesh, <code>1.0</code> = right
+     * mesh.
+     * @param width Width of the pictures.
+     * @param height Height of the pictures.
+     * @return Left & right warped picture, clip ratio as alpha. Shared with
+     * the cache, must not be modified.
+     */
+    public static BufferedImage[] warp(double ratio, int width, int height){
+        String key = getKey(ratio, width, height);
+        int g;
+        synchronized(CMorphEngine.class){
+            BufferedImage 
+                left = cache.get("L " + key), 
+                right = cache.get("R " + key);
+            if(null != left && null != right){
+                return new BufferedImage[]{left, right};
+            }
+            g = generation;
+        }
+        BufferedImage images[] = CMorphOperator.warp(ratio, width, height);
+        synchronized(CMorphEngine.class){
+            if(g == generation){
+                put("L " + key, images[0]);
+                put("R " + key, images[1]);
+                trim();
+            }
+        }
+        return images;
+    }
+    /**
+     * Compose the cache key of a step.
+     * @param ratio Ratio of the step.
+     * @param width Width of the picture.
+     * @param height Height of the picture.
+     * @return Key without prefix.
+     */
+    private static String getKey(double ratio, int width, int height){
+        return "" + Double.doubleToLongBits(ratio) + ' ' + 
+            width + ' ' + height;
+    }
+    /**
+     * Add a picture to the cache.
+     * @param key Cache key.
+     * @param image Picture.
+     */
+    private static void put(String key, BufferedImage image){
+        BufferedImage old = cache.put(key, image);
+        bytes += getBytes(image);
+        if(null != old){
+            bytes -= getBytes(old);
+        }
+    }
+    /**
+     * Drop the least recently used pictures until the cache fits into its
+     * memory limit.
+     */
+    private static void trim(){
+        long limit = (long)CConfig.RENDER_CACHE << 20;
+        Iterator<BufferedImage> it = cache.values().iterator();
+        while(limit < bytes && it.hasNext()){
+            bytes -= getBytes(it.next());
+            it.remove();
+        }
+    }
+    /**
+     * Estimate the memory of a picture.
+     * @param image Picture with one <code>int</code> per pixel.
+     * @return Size in bytes.
+     */
+    private static long getBytes(BufferedImage image){
+        return 4L * image.getWidth() * image.getHeight();
+    }
+}
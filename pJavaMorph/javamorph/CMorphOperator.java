@@ -2,6 +2,8 @@ package javamorph;
 
 import java.io.*;
 import java.awt.*;
+import java.awt.image.*;
+import java.util.*;
 import javax.imageio.*;
 import javax.swing.*;
 
@@ -40,6 +42,22 @@ import javax.swing.*;
  * Hint: Writes the result into the working directory.
  */
 public class CMorphOperator implements Runnable{
+    /** Fixed point shift of the pixel weights. */
+    public static final int WEIGHT_SHIFT = 16;
+    /** Fixed point value of the weight <code>1.0</code>. */
+    public static final int WEIGHT_ONE = 1 << WEIGHT_SHIFT;
+    /** Fixed point value of the weight <code>0.5</code> (rounding). */
+    public static final int WEIGHT_HALF = WEIGHT_ONE >> 1;
+    /** Pyramid levels built without mip mapping, for the coarse previews. */
+    public static final int COARSE_LEVELS = 4;
+    /** Warp mode: Merge both warped pictures. */
+    public static final int WARP_NONE = 0;
+    /** Warp mode: Left picture warped only, clip ratio as alpha. */
+    public static final int WARP_LEFT = 1;
+    /** Warp mode: Right picture warped only, clip ratio as alpha. */
+    public static final int WARP_RIGHT = 2;
+    /** Current warp mode. */
+    private static int warp = WARP_NONE;
     /** Application's main class. */
     private static CMain parent;
     /** 
@@ -48,32 +66,118 @@ public class CMorphOperator implements Runnable{
      * merged image.
      */
     private static double ratio;
-    /** Current point coordinates of the left image. */
-    private static Point left_point = new Point();
-    /** Current point coordinates of the right image. */
-    private static Point right_point = new Point();
-    /** Current point coordinates of the result image. */
-    private static Point result_point = new Point();
     /** RGB value of the current left pixel. */
     private static int left_pixel;
     /** RGB value of the current right pixel. */
     private static int right_pixel;
-    /** RGB value of the current result pixel. */
-    private static int result_pixel;
-    /** Transformation matrix from result to left point. */
-    private static CTransform left_trafo;
-    /** Transformation matrix from result to right point. */
-    private static CTransform right_trafo;
+    /** Pixels of the current result picture, row by row. */
+    private static int result_pixels[];
+    /** Pixels of the result picture's raster, row by row. */
+    private static int image_pixels[];
+    /** Pixels of each result picture of a batch, row by row. */
+    private static int buffers[][];
+    /** Width of the rendered area. */
+    private static int result_width;
+    /** Height of the rendered area. */
+    private static int result_height;
+    /** Output column of the rendered area's first column. */
+    private static int view_x;
+    /** Output row of the rendered area's first row. */
+    private static int view_y;
+    /** Corners & transformation matrixes of all triangles. */
+    private static CTransformTable table;
+    /** Corners & transformation matrixes for each step of a batch. */
+    private static CTransformTable tables[];
     /** Index of the current triangle within all three lists. */
     private static int t_idx;
-    /** List of result points situated within the current result triangle. */
-    private static Point withins[];
-    /** Polygon clip ratio of the current left pixel. */
-    private static double left_ratio;
-    /** Polygon clip ratio of the current right pixel. */
-    private static double right_ratio;
+    /** Scan conversion of the current result triangle. */
+    private static CRasterizer rasterizer;
+    /** 
+     * Neighbor triangle at edge i (corner i -> corner i + 1) of triangle t 
+     * at index <code>3 * t + i</code>, <code>-1</code> on the mesh border.
+     */
+    private static int neighbors[];
+    /** Index of the triangle owning each result pixel, <code>-1</code> if
+     * none. Used by the visibility buffer render mode only. */
+    private static int visible[];
+    /** Polygon clip ratio of the current left pixel (0 ... 255). */
+    private static int left_ratio;
+    /** Polygon clip ratio of the current right pixel (0 ... 255). */
+    private static int right_ratio;
+    /** Fixed point weight of the current left pixel. */
+    private static int left_weight;
+    /** Fixed point weight of the current right pixel. */
+    private static int right_weight;
+    /** Left picture, alpha channel is the left clip ratio. */
+    private static CSource left_source;
+    /** Right picture, alpha channel is the right clip ratio. */
+    private static CSource right_source;
+    /** 
+     * Fixed point left weight of the current step for each pair of clip
+     * ratios. Index is <code>(left_ratio << 8) | right_ratio</code>. The
+     * right weight is <code>WEIGHT_ONE - left weight</code>.
+     */
+    private static int weights[];
+    /** Weight table for each step of a batch. */
+    private static int luts[][];
+    /** Pyramid of the left picture, index = level. */
+    private static CSource left_pyramid[];
+    /** Pyramid of the right picture, index = level. */
+    private static CSource right_pyramid[];
+    /** Left pyramid level sampled by the current triangle. */
+    private static CSource left_level;
+    /** Right pyramid level sampled by the current triangle. */
+    private static CSource right_level;
+    /** Transformation from result to left level point, current triangle. */
+    private static final double left_matrix[] = 
+        new double[CTransformTable.STRIDE];
+    /** Transformation from result to right level point, current triangle. */
+    private static final double right_matrix[] = 
+        new double[CTransformTable.STRIDE];
+    /** Left pyramid level of each triangle (visibility buffer mode). */
+    private static int left_lods[];
+    /** Right pyramid level of each triangle (visibility buffer mode). */
+    private static int right_lods[];
+    /** Minimum left clip ratio below each left triangle for each level. */
+    private static int left_min[][];
+    /** Maximum left clip ratio below each left triangle for each level. */
+    private static int left_max[][];
+    /** Minimum right clip ratio below each right triangle for each level. */
+    private static int right_min[][];
+    /** Maximum right clip ratio below each right triangle for each level. */
+    private static int right_max[][];
+    /** First column of the spans to be rendered with one sample. */
+    private static int span_lo[];
+    /** Last column of the spans to be rendered with one sample. */
+    private static int span_hi[];
+    /** First column of the spans, not clipped to the rendered area. */
+    private static int span_first[];
+    /** 
+     * Sums of the samples near the triangle edges of the current step:
+     * red, green, blue & count for each result pixel. <code>null</code> if 
+     * there is no supersampling.
+     */
+    private static int acc[];
+    /** Sums of the samples near the triangle edges for each step. */
+    private static int accs[][];
+    /** Fixed point offsets of the samples within a pixel: x, y, x, y ... */
+    private static int offsets[];
     /** If <code>true</code> the user forces the morph process to abort. */
     private static boolean f_break;
+    /** If <code>true</code> the current single picture is not needed. */
+    private static volatile boolean f_cancel;
+    /** <code>true</code> while a cancelable single picture is rendered. */
+    private static boolean f_single;
+    /** <code>true</code> if the pictures fused with their clips are valid. */
+    private static volatile boolean f_sources;
+    /** <code>true</code> if clip statistics & neighbors are valid. */
+    private static volatile boolean f_mesh;
+    /** 
+     * Number of pyramid levels usable without mip mapping. More than one 
+     * while a cancelable single picture smaller than the result picture 
+     * is rendered.
+     */
+    private static int coarse = 1;
     /** Instance of the progress bar. */
     private static CProgress progress;
     /**
@@ -93,135 +197,1008 @@ public class CMorphOperator implements Runnable{
     public static void doBreak(){
         f_break = true;
     }
+    /**
+     * Abort or allow rendering of single pictures. Doesn't affect the morph
+     * batch.
+     * @param cancel <code>true</code> to abort the current single picture.
+     */
+    public static void cancel(boolean cancel){
+        f_cancel = cancel;
+    }
+    /**
+     * Force the next single picture to rebuild the data which is equal for
+     * all steps. Doesn't wait for a picture being rendered, so the event
+     * thread may call it.
+     * @param clip <code>true</code> if the clip matrixes have changed, 
+     * <code>false</code> if only the triangulation has changed.
+     */
+    public static void invalidate(boolean clip){
+        f_mesh = false;
+        if(clip){
+            f_sources = false;
+        }
+    }
+    /**
+     * Test whether the pictures fused with their clip matrixes are still
+     * valid, possibly fused with the clip matrixes of a previous polygon.
+     * @return <code>true</code> if a picture needs no new fusion.
+     */
+    public static boolean isPrepared(){
+        return f_sources;
+    }
+    /**
+     * Update the data which is equal for all steps after some triangles 
+     * have changed their corners. The number of triangles must be 
+     * unchanged.
+     * @param triangles Indices of the changed triangles.
+     */
+    public static synchronized void invalidate(int triangles[]){
+        if(!f_sources || !f_mesh){
+            /* Everything is rebuilt anyway. */
+            return;
+        }
+        for(int t: triangles){
+            genMaskStats(t);
+        }
+        genNeighbors();
+        tables = null;
+    }
     /**
      * Thread API. Starts morph batch for a number of intermediate pictures
      * with increasing ratio value.
      */
     public void run(){
-        f_break = false;
         try{
-            for(int i = 0;
-                (i <= CConfig.NUM_OF_MORPH_STEPS) && (!f_break); 
-                ++i){
-                /* Clear result picture.*/
-                for(int x = 0; x < CConfig.result_image.getWidth(); ++x){
-                    for(int y = 0; y < CConfig.result_image.getHeight(); ++ y){
-                        CConfig.result_image.setRGB(x, y, 0x0);
-                    }
-                }
-                /* Calculate ratio. */
-                ratio = ((double)i / CConfig.NUM_OF_MORPH_STEPS);
-                /* Depends on current ratio. */
-                genResultTriangles();
-                /* Iterate through the triangles. */
-                for(t_idx = 0; 
-                    t_idx < CConfig.result_triangles.size(); 
-                    ++t_idx){
-                    triangle();
-                }
-                File f = new File(CStrings.getOutput(i));
-                /* Save image into workdir. */
-                ImageIO.write(CConfig.result_image, "jpg",f);
-                /* Show progress. */
-                progress.setProgress(i, 0, CConfig.NUM_OF_MORPH_STEPS);
-                Thread.sleep(1);
-            }
+            morph(CStrings.OUTPUTDIR);
             progress.close();
         }catch(Exception e){
             System.err.println(e.getMessage());
             e.printStackTrace();
             JOptionPane.showMessageDialog(parent, 
                     "Can't save result. Please see console output!");
-            
         }
     }
     /**
-     * Make a weighted average mesh depending on the current ratio.
+     * Render a single picture without writing it to disk. Triangulation &
+     * clip matrixes must be ready. Data equal for all steps is kept until 
+     * <code>invalidate()</code> is called.
+     * @param ratio <code>0.0</code> = left picture, <code>1.0</code> = 
+     * right picture.
+     * @param width Width of the whole output picture.
+     * @param height Height of the whole output picture.
+     * @param roi Rendered area of the output picture, <code>null</code> for
+     * the whole output picture.
+     * @return Rendered area.
      */
-    private static void genResultTriangles(){
-        CConfig.result_triangles.clear();
-        /* For all triangles belonging to both pictures. */
-        /* First with first, second with second and so on. */ 
-        for(int i = 0; i < CConfig.left_triangles.size(); ++i){
-            CTriangle 
-                r = CConfig.left_triangles.get(i),
-                s = CConfig.right_triangles.get(i),
-                t = new CTriangle(
-                    merge(r.getPoints()[0], s.getPoints()[0]),
-                    merge(r.getPoints()[1], s.getPoints()[1]),
-                    merge(r.getPoints()[2], s.getPoints()[2])
-                );
-            /* Add merged triangle relating to ratio. */
-            CConfig.result_triangles.add(t);
+    public static BufferedImage render
+            (double ratio, int width, int height, Rectangle roi){
+        return render(ratio, width, height, roi, false);
+    }
+    /**
+     * Render a single picture without writing it to disk. Triangulation &
+     * clip matrixes must be ready. Data equal for all steps is kept until 
+     * <code>invalidate()</code> is called.
+     * @param ratio <code>0.0</code> = left picture, <code>1.0</code> = 
+     * right picture.
+     * @param width Width of the whole output picture.
+     * @param height Height of the whole output picture.
+     * @param roi Rendered area of the output picture, <code>null</code> for
+     * the whole output picture.
+     * @param cancelable <code>true</code> if <code>cancel()</code> may 
+     * abort the picture.
+     * @return Rendered area, <code>null</code> if cancelled.
+     */
+    public static synchronized BufferedImage render(double ratio, 
+            int width, int height, Rectangle roi, boolean cancelable){
+        if(null == roi){
+            roi = new Rectangle(0, 0, width, height);
         }
+        BufferedImage image = new BufferedImage
+            (roi.width, roi.height, BufferedImage.TYPE_INT_RGB);
+        return render(image, ratio, width, height, roi, cancelable) ? 
+            image : null;
     }
-    /** Merge two points weighted by ratio.
-     * 
-     * @param p1 First point.
-     * @param p2 Second point.
-     * @return Point on a line between them.
+    /**
+     * Render a single picture into a given picture.
+     * @param image Picture with one <code>int</code> per pixel, size of 
+     * the rendered area.
+     * @param ratio <code>0.0</code> = left picture, <code>1.0</code> = 
+     * right picture.
+     * @param width Width of the whole output picture.
+     * @param height Height of the whole output picture.
+     * @param roi Rendered area of the output picture.
+     * @param cancelable <code>true</code> if <code>cancel()</code> may 
+     * abort the picture.
+     * @return <code>false</code> if cancelled.
+     */
+    private static boolean render(BufferedImage image, double ratio, 
+            int width, int height, Rectangle roi, boolean cancelable){
+        validate();
+        f_single = cancelable;
+        /* A coarse preview reads a level near its own size. */
+        while(cancelable && coarse < COARSE_LEVELS &&
+            width << coarse <= CConfig.result_image.getWidth() &&
+            height << coarse <= CConfig.result_image.getHeight()){
+            ++coarse;
+        }
+        try{
+            view(image, width, height, roi, 1);
+            begin(0, ratio);
+            draw(1);
+        }finally{
+            f_single = false;
+            coarse = 1;
+        }
+        return !(cancelable && f_cancel);
+    }
+    /**
+     * Warp both input pictures to the shape of one step, without merging
+     * them. Triangulation & clip matrixes must be ready.
+     * @param ratio <code>0.0</code> = left mesh, <code>1.0</code> = right
+     * mesh.
+     * @param width Width of the output pictures.
+     * @param height Height of the output pictures.
+     * @return Left & right warped picture, clip ratio as alpha.
+     */
+    public static synchronized BufferedImage[] warp
+            (double ratio, int width, int height){
+        BufferedImage images[] = new BufferedImage[2];
+        int modes[] = {WARP_LEFT, WARP_RIGHT};
+        for(int i = 0; i < images.length; ++i){
+            images[i] = 
+                new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            warp = modes[i];
+            try{
+                render(images[i], ratio, width, height, 
+                    new Rectangle(0, 0, width, height), false);
+            }finally{
+                warp = WARP_NONE;
+            }
+        }
+        return images;
+    }
+    /**
+     * Merge two warped pictures of the same step. The clip ratios act the
+     * same way as when rendering the step in one pass.
+     * @param left Left warped picture.
+     * @param right Right warped picture, same size.
+     * @param ratio <code>0.0</code> = left colors, <code>1.0</code> = right
+     * colors.
+     * @return Merged picture.
+     */
+    public static synchronized BufferedImage dissolve
+            (BufferedImage left, BufferedImage right, double ratio){
+        final int
+            w = left.getWidth(),
+            l[] = ((DataBufferInt)left.getRaster().getDataBuffer()).getData(),
+            r[] = ((DataBufferInt)right.getRaster().getDataBuffer()).getData(),
+            lut[] = new int[256 * 256];
+        BufferedImage image = new BufferedImage
+            (w, left.getHeight(), BufferedImage.TYPE_INT_RGB);
+        final int pixels[] = 
+            ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+        CMorphOperator.ratio = ratio;
+        weights = lut;
+        genWeights();
+        /* Each thread merges its own rows. */
+        CParallel.run(left.getHeight(), new IRange(){
+            public void run(int from, int to){
+                for(int i = from * w; i < to * w; ++i){
+                    pixels[i] = blend(l[i], r[i], 
+                        lut[((l[i] >>> 24) << 8) | (r[i] >>> 24)]);
+                }
+            }
+        });
+        return image;
+    }
+    /**
+     * Render all steps into a directory within the caller's thread. 
+     * Triangulation & clip matrixes must be ready. Data equal for all steps
+     * is kept until <code>invalidate()</code> is called.
+     * @param dir Output directory path, separator at the end.
+     * @throws Exception If a picture can't be written.
+     */
+    public static synchronized void morph(String dir) throws Exception{
+        f_break = false;
+        int
+            w = CConfig.result_image.getWidth(),
+            h = CConfig.result_image.getHeight(),
+            steps[] = new int[CConfig.NUM_OF_MORPH_STEPS + 1],
+            m = 0,
+            done = 0;
+        /* Copy the unchanged steps from the cache. */
+        CFrameCache.begin(w, h);
+        for(int i = 0; i <= CConfig.NUM_OF_MORPH_STEPS; ++i){
+            if(CFrameCache.fetch
+                (getRatio(i), new File(CStrings.getOutput(dir, i)))){
+                setProgress(++done, steps.length);
+            }else{
+                steps[m++] = i;
+            }
+        }
+        if(0 < m){
+            validate();
+            view(CConfig.result_image, w, h, new Rectangle(0, 0, w, h), 
+                Math.max(1, CConfig.BATCH_FRAMES));
+        }
+        for(int i = 0; (i < m) && (!f_break); i += buffers.length){
+            int n = Math.min(buffers.length, m - i);
+            batch(steps, i, n);
+            for(int j = 0; j < n; ++j){
+                /* Bring the step into the result picture's raster. */
+                if(buffers[j] != image_pixels){
+                    System.arraycopy(buffers[j], 0, 
+                        image_pixels, 0, image_pixels.length);
+                }
+                File f = new File(CStrings.getOutput(dir, steps[i + j]));
+                /* Save image into workdir. */
+                ImageIO.write(CConfig.result_image, CFrameCache.FORMAT, f);
+                CFrameCache.store(getRatio(steps[i + j]), f);
+                /* Show progress. */
+                setProgress(++done, steps.length);
+            }
+            Thread.sleep(1);
+        }
+    }
+    /**
+     * Show the number of written pictures.
+     * @param done Number of written pictures.
+     * @param max Number of all pictures.
+     */
+    private static void setProgress(int done, int max){
+        /* No progress bar without the user interface. */
+        if(null != progress){
+            progress.setProgress(done, 0, max);
+        }
+    }
+    /**
+     * Rebuild the data which is equal for all steps & sizes as far as it
+     * has been invalidated.
+     */
+    private static void validate(){
+        if(!f_sources){
+            prepare();
+        }else if(!f_mesh){
+            /* Set first, so an invalidation meanwhile isn't lost. */
+            f_mesh = true;
+            genMaskStats();
+            genNeighbors();
+            tables = null;
+        }
+    }
+    /**
+     * Provide the data which is equal for all steps & sizes: Pictures fused
+     * with their clip matrixes, clip statistics & neighbors of the 
+     * triangles.
+     */
+    private static void prepare(){
+        /* Set first, so an invalidation meanwhile isn't lost. */
+        f_sources = true;
+        f_mesh = true;
+        boolean done = false;
+        try{
+            int levels = 
+                0 != CConfig.MIPMAP ? Integer.MAX_VALUE : COARSE_LEVELS;
+            left_source = new CSource
+                (CConfig.left_image, CConfig.left_clip, CConfig.EDGE_MODE, 
+                    CConfig.SOURCE_LAYOUT, CConfig.FILTER_MODE, levels);
+            right_source = new CSource
+                (CConfig.right_image, CConfig.right_clip, CConfig.EDGE_MODE, 
+                    CConfig.SOURCE_LAYOUT, CConfig.FILTER_MODE, levels);
+            left_pyramid = getPyramid(left_source);
+            right_pyramid = getPyramid(right_source);
+            genMaskStats();
+            genNeighbors();
+            tables = null;
+            done = true;
+        }finally{
+            if(!done){
+                f_sources = false;
+            }
+        }
+    }
+    /**
+     * List all levels of a picture's pyramid.
+     * @param source Picture.
+     * @return Pyramid levels, index = level.
+     */
+    private static CSource[] getPyramid(CSource source){
+        CSource pyramid[] = new CSource[source.getLevels()];
+        for(int i = 0; i < pyramid.length; ++i){
+            pyramid[i] = source.getLevel(i);
+        }
+        return pyramid;
+    }
+    /**
+     * Choose the pyramid level of the current triangle. Each result pixel
+     * should cover less than two pixels of the level. Without mip mapping
+     * only the coarse previews read another level than the first one.
+     * @param m Transformation matrixes from result to input picture.
+     * @param levels Number of levels of the input picture.
+     * @return Pyramid level.
+     */
+    private static int getLevel(double m[], int levels){
+        int 
+            k = CTransformTable.STRIDE * t_idx, 
+            level = 0,
+            max = 0 != CConfig.MIPMAP ? levels : Math.min(levels, coarse);
+        /* Input pixels per result pixel. */
+        double f = Math.max(
+            Math.hypot(m[k], m[k + 3]), Math.hypot(m[k + 1], m[k + 4]));
+        while(2.0 <= f && level < max - 1){
+            f /= 2.0;
+            ++level;
+        }
+        return level;
+    }
+    /**
+     * Adapt the transformation of the current triangle to a pyramid level.
+     * @param m Transformation matrixes from result to input picture.
+     * @param level Pyramid level.
+     * @param matrix Receives the transformation from result to level.
+     */
+    private static void scale(double m[], int level, double matrix[]){
+        int k = CTransformTable.STRIDE * t_idx;
+        if(0 == level){
+            System.arraycopy(m, k, matrix, 0, CTransformTable.STRIDE);
+            return;
+        }
+        /* Pixel centers of both levels coincide. */
+        double s = 1.0 / (1 << level);
+        matrix[0] = m[k] * s;
+        matrix[1] = m[k + 1] * s;
+        matrix[2] = (m[k + 2] + 0.5) * s - 0.5;
+        matrix[3] = m[k + 3] * s;
+        matrix[4] = m[k + 4] * s;
+        matrix[5] = (m[k + 5] + 0.5) * s - 0.5;
+    }
+    /**
+     * Provide the buffers for rendering an area of an output picture. The
+     * result mesh is scaled from the result picture's size to the output
+     * picture's size, so only the pixels of the area are calculated.
+     * @param image Receives the first step, size of the area.
+     * @param width Width of the whole output picture.
+     * @param height Height of the whole output picture.
+     * @param roi Rendered area of the output picture.
+     * @param n Number of steps rendered together.
+     */
+    private static void view(BufferedImage image, 
+            int width, int height, Rectangle roi, int n){
+        /* Keep the tables while the triangulation is unchanged. */
+        if(null == tables || n != tables.length){
+            tables = new CTransformTable[n];
+            luts = new int[n][256 * 256];
+        }
+        buffers = new int[n][];
+        /* The first step writes directly into the picture's raster. */
+        image_pixels = ((DataBufferInt)image
+                .getRaster().getDataBuffer()).getData();
+        for(int j = 0; j < n; ++j){
+            if(null == tables[j]){
+                tables[j] = new CTransformTable
+                    (CConfig.left_triangles, CConfig.right_triangles);
+            }
+            tables[j].setView(
+                (double)width / CConfig.result_image.getWidth(),
+                (double)height / CConfig.result_image.getHeight(),
+                roi.x, roi.y);
+            buffers[j] = 0 == j ? image_pixels : new int[image_pixels.length];
+        }
+        result_width = image.getWidth();
+        result_height = image.getHeight();
+        view_x = roi.x;
+        view_y = roi.y;
+        /* 
+         * Supersampling of the edges in the triangle render mode only, not
+         * for the warped pictures, because the sums have no alpha.
+         */
+        boolean edges = 1 < CConfig.SUPERSAMPLING && 
+            CConfig.RENDER_VISIBILITY != CConfig.RENDER_MODE &&
+            WARP_NONE == warp;
+        rasterizer = new CRasterizer(result_width, result_height, edges);
+        accs = new int[n][];
+        if(edges){
+            genOffsets(CConfig.SUPERSAMPLING);
+            for(int j = 0; j < n; ++j){
+                accs[j] = new int[4 * image_pixels.length];
+            }
+        }
+        if(CConfig.RENDER_VISIBILITY == CConfig.RENDER_MODE){
+            visible = new int[image_pixels.length];
+            left_lods = new int[CConfig.left_triangles.size()];
+            right_lods = new int[CConfig.left_triangles.size()];
+        }
+    }
+    /**
+     * Render a batch of steps into the buffers.
+     * @param steps Numbers of the steps to render.
+     * @param first Index of the first step of the batch.
+     * @param n Number of steps, not more than buffers.
+     */
+    private static void batch(int steps[], int first, int n){
+        for(int j = 0; j < n; ++j){
+            begin(j, getRatio(steps[first + j]));
+        }
+        draw(n);
+    }
+    /**
+     * Calculate the ratio of one step.
+     * @param step Number of the step.
+     * @return <code>0.0</code> = left picture, <code>1.0</code> = right
+     * picture.
+     */
+    private static double getRatio(int step){
+        return (double)step / CConfig.NUM_OF_MORPH_STEPS;
+    }
+    /**
+     * Prepare one step of a batch.
+     * @param j Index of the step within the batch.
+     * @param ratio Ratio of the step.
+     */
+    private static void begin(int j, double ratio){
+        select(j);
+        /* Clear result picture.*/
+        Arrays.fill(result_pixels, 0x0);
+        CMorphOperator.ratio = ratio;
+        /* Depends on current ratio. */
+        table.update(ratio);
+        genWeights();
+    }
+    /**
+     * Render the prepared steps of a batch.
+     * In the triangle render mode all steps of the batch are rendered
+     * triangle by triangle, so the source pixels of a triangle are still
+     * cached when the next step needs them.
+     * @param n Number of steps.
+     */
+    private static void draw(int n){
+        if(CConfig.RENDER_VISIBILITY == CConfig.RENDER_MODE && 
+            WARP_NONE == warp){
+            for(int j = 0; j < n && !isCancelled(); ++j){
+                select(j);
+                visibility();
+                /* Each thread renders its own rows. */
+                CParallel.run(result_height, new IRange(){
+                    public void run(int from, int to){
+                        resolve(from, to);
+                    }
+                });
+            }
+        }else{
+            /* Iterate through the triangles, then through the steps. */
+            for(t_idx = 0; 
+                t_idx < tables[0].size() && !isCancelled(); 
+                ++t_idx){
+                for(int j = 0; j < n; ++j){
+                    select(j);
+                    triangle();
+                }
+            }
+            if(null != accs[0]){
+                for(int j = 0; j < n; ++j){
+                    select(j);
+                    average();
+                }
+            }
+        }
+    }
+    /**
+     * Test whether to stop rendering the current single picture.
+     * @return <code>true</code> if the single picture has been cancelled.
+     */
+    private static boolean isCancelled(){
+        return f_single && f_cancel;
+    }
+    /**
+     * Place the samples of a pixel on a regular grid.
+     * @param n Number of samples per row & column.
+     */
+    private static void genOffsets(int n){
+        offsets = new int[2 * n * n];
+        for(int y = 0, k = 0; y < n; ++y){
+            for(int x = 0; x < n; ++x){
+                offsets[k++] = 
+                    (2 * x + 1) * CRasterizer.SUB_ONE / (2 * n) - 
+                    CRasterizer.SUB_ONE / 2;
+                offsets[k++] = 
+                    (2 * y + 1) * CRasterizer.SUB_ONE / (2 * n) - 
+                    CRasterizer.SUB_ONE / 2;
+            }
+        }
+    }
+    /**
+     * Add the samples of the current triangle to the pixels near its edges.
+     * Each sample is owned by one triangle only, like the pixels.
+     */
+    private static void edges(){
+        double l[] = left_matrix, r[] = right_matrix;
+        int 
+            in_lo[] = rasterizer.getInLo(),
+            in_hi[] = rasterizer.getInHi(),
+            out_lo[] = rasterizer.getOutLo(),
+            out_hi[] = rasterizer.getOutHi(),
+            px, py, l_pixel, r_pixel, pixel, i;
+        double fx, fy;
+        for(int y = rasterizer.getYMin(); y <= rasterizer.getYMax(); ++y){
+            for(int x = out_lo[y]; x <= out_hi[y]; ++x){
+                /* Skip the pixels completely inside. */
+                if(x == in_lo[y] && in_lo[y] <= in_hi[y]){
+                    x = in_hi[y];
+                    continue;
+                }
+                i = 4 * (y * result_width + x);
+                for(int s = 0; s < offsets.length; s += 2){
+                    px = (x << CRasterizer.SUB_BITS) + offsets[s];
+                    py = (y << CRasterizer.SUB_BITS) + offsets[s + 1];
+                    if(!rasterizer.inside(px, py)){
+                        continue;
+                    }
+                    fx = (double)px / CRasterizer.SUB_ONE + view_x;
+                    fy = (double)py / CRasterizer.SUB_ONE + view_y;
+                    l_pixel = left_level.sample(
+                        CSource.fix(fx * l[0] + fy * l[1] + l[2]),
+                        CSource.fix(fx * l[3] + fy * l[4] + l[5]));
+                    r_pixel = right_level.sample(
+                        CSource.fix(fx * r[0] + fy * r[1] + r[2]),
+                        CSource.fix(fx * r[3] + fy * r[4] + r[5]));
+                    pixel = blend(l_pixel, r_pixel, 
+                        weights[((l_pixel >>> 24) << 8) | (r_pixel >>> 24)]);
+                    acc[i] += (pixel >> 16) & 0xff;
+                    acc[i + 1] += (pixel >> 8) & 0xff;
+                    acc[i + 2] += pixel & 0xff;
+                    ++acc[i + 3];
+                }
+            }
+        }
+    }
+    /**
+     * Replace the pixels near the triangle edges by the average of their
+     * samples & clear the sums for the next step.
+     */
+    private static void average(){
+        for(int i = 0, j = 0; i < result_pixels.length; ++i, j += 4){
+            int n = acc[j + 3];
+            if(0 < n){
+                result_pixels[i] = 0xff000000 | 
+                    ((acc[j] + n / 2) / n << 16) | 
+                    ((acc[j + 1] + n / 2) / n << 8) | 
+                    ((acc[j + 2] + n / 2) / n);
+                acc[j] = 0;
+                acc[j + 1] = 0;
+                acc[j + 2] = 0;
+                acc[j + 3] = 0;
+            }
+        }
+    }
+    /**
+     * Make one step of the batch the current step.
+     * @param j Index of the step within the batch.
+     */
+    private static void select(int j){
+        table = tables[j];
+        result_pixels = buffers[j];
+        weights = luts[j];
+        acc = accs[j];
+    }
+    /**
+     * First pass of the visibility buffer render mode: Write the index of
+     * the owning triangle into each result pixel.
+     */
+    private static void visibility(){
+        int lo[], hi[];
+        Arrays.fill(visible, -1);
+        for(t_idx = 0; t_idx < table.size(); ++t_idx){
+            if(!raster()){
+                continue;
+            }
+            left_lods[t_idx] = getLevel(table.getLeft(), left_pyramid.length);
+            right_lods[t_idx] = 
+                getLevel(table.getRight(), right_pyramid.length);
+            lo = rasterizer.getXLo();
+            hi = rasterizer.getXHi();
+            for(int y = rasterizer.getYMin(); y <= rasterizer.getYMax(); ++y){
+                if(lo[y] <= hi[y]){
+                    Arrays.fill(visible, 
+                        y * result_width + lo[y], 
+                        y * result_width + hi[y] + 1, 
+                        t_idx);
+                }
+            }
+        }
+    }
+    /**
+     * Second pass of the visibility buffer render mode: Merge the pixels of
+     * some result rows, each by the transformation of its triangle.
+     * Uses local variables only, so the rows may be shared among threads.
+     * @param from First row (inclusive).
+     * @param to Last row (exclusive).
+     */
+    private static void resolve(int from, int to){
+        int t, k, l_pixel, r_pixel, l_lod, r_lod;
+        double l[] = table.getLeft(), r[] = table.getRight();
+        for(int y = from + view_y; y < to + view_y; ++y){
+            for(int x = view_x, i = (y - view_y) * result_width; 
+                x < view_x + result_width; 
+                ++x, ++i){
+                t = visible[i];
+                /* Not covered by any triangle. */
+                if(0 > t){
+                    continue;
+                }
+                k = CTransformTable.STRIDE * t;
+                l_lod = left_lods[t];
+                r_lod = right_lods[t];
+                /* Pixel centers of all levels coincide. */
+                l_pixel = left_pyramid[l_lod].sample(
+                    (CSource.fix(x * l[k] + y * l[k + 1] + l[k + 2]) + 
+                        CSource.FIX_HALF >> l_lod) - CSource.FIX_HALF,
+                    (CSource.fix(x * l[k + 3] + y * l[k + 4] + l[k + 5]) + 
+                        CSource.FIX_HALF >> l_lod) - CSource.FIX_HALF);
+                r_pixel = right_pyramid[r_lod].sample(
+                    (CSource.fix(x * r[k] + y * r[k + 1] + r[k + 2]) + 
+                        CSource.FIX_HALF >> r_lod) - CSource.FIX_HALF,
+                    (CSource.fix(x * r[k + 3] + y * r[k + 4] + r[k + 5]) + 
+                        CSource.FIX_HALF >> r_lod) - CSource.FIX_HALF);
+                result_pixels[i] = blend(l_pixel, r_pixel, 
+                    weights[((l_pixel >>> 24) << 8) | (r_pixel >>> 24)]);
+            }
+        }
+    }
+    /**
+     * Fill the weight table for the current ratio.
+     */
+    private static void genWeights(){
+        for(int l = 0; l < 256; ++l){
+            for(int r = 0; r < 256; ++r){
+                left_ratio = l;
+                right_ratio = r;
+                weights();
+                weights[(l << 8) | r] = left_weight;
+            }
+        }
+    }
+    /**
+     * Calculate minimum & maximum of both clip matrixes below each pair of
+     * source triangles, for each pyramid level.
+     */
+    private static void genMaskStats(){
+        int n = CConfig.left_triangles.size();
+        left_min = new int[left_pyramid.length][n];
+        left_max = new int[left_pyramid.length][n];
+        right_min = new int[right_pyramid.length][n];
+        right_max = new int[right_pyramid.length][n];
+        for(int i = 0; i < n; ++i){
+            genMaskStats(i);
+        }
+    }
+    /**
+     * Calculate minimum & maximum of both clip matrixes below one pair of
+     * source triangles, for each pyramid level.
+     * @param i Index of the triangle.
+     */
+    private static void genMaskStats(int i){
+        int range[];
+        for(int l = 0; l < left_pyramid.length; ++l){
+            range = getRange
+                (CConfig.left_triangles.get(i), left_pyramid[l], l);
+            left_min[l][i] = range[0];
+            left_max[l][i] = range[1];
+        }
+        for(int l = 0; l < right_pyramid.length; ++l){
+            range = getRange
+                (CConfig.right_triangles.get(i), right_pyramid[l], l);
+            right_min[l][i] = range[0];
+            right_max[l][i] = range[1];
+        }
+    }
+    /**
+     * Seek the range of the clip ratios below one triangle. The bounding
+     * box of the triangle is searched, enlarged by two pixels because the
+     * transformation may round to a neighbor pixel & the filters read
+     * the neighbors of a pixel.
+     * @param t Source triangle.
+     * @param source Picture of the triangle, including the clip ratios.
+     * @param level Pyramid level of the picture.
+     * @return Minimum & maximum clip ratio.
+     */
+    private static int[] getRange(CTriangle t, CSource source, int level){
+        Point p[] = t.getPoints();
+        int pixels[] = source.getPixels();
+        int
+            min = 255, 
+            max = 0,
+            w = source.getWidth(),
+            h = source.getHeight(),
+            x_min = (Math.min(p[0].x, Math.min(p[1].x, p[2].x)) >> level) - 2,
+            x_max = (Math.max(p[0].x, Math.max(p[1].x, p[2].x)) >> level) + 2,
+            y_min = (Math.min(p[0].y, Math.min(p[1].y, p[2].y)) >> level) - 2,
+            y_max = (Math.max(p[0].y, Math.max(p[1].y, p[2].y)) >> level) + 2;
+        x_min = Math.max(0, x_min);
+        y_min = Math.max(0, y_min);
+        x_max = Math.min(w - 1, x_max);
+        y_max = Math.min(h - 1, y_max);
+        for(int y = y_min; y <= y_max; ++y){
+            for(int x = x_min; x <= x_max; ++x){
+                min = Math.min(min, pixels[source.index(x, y)] >>> 24);
+                max = Math.max(max, pixels[source.index(x, y)] >>> 24);
+            }
+        }
+        return new int[]{min, max};
+    }
+    /**
+     * Seek the neighbor triangle at each edge of each triangle.
+     */
+    private static void genNeighbors(){
+        HashMap<Long, Integer> first = new HashMap<Long, Integer>();
+        int n = CConfig.triangle_indices.size();
+        neighbors = new int[3 * n];
+        Arrays.fill(neighbors, -1);
+        for(int i = 0; i < n; ++i){
+            int c[] = CConfig.triangle_indices.get(i);
+            for(int e = 0; e < 3; ++e){
+                Long key = CTriangulation.edgeKey(c[e], c[(e + 1) % 3]);
+                Integer k = first.get(key);
+                if(null == k){
+                    /* First triangle at this edge. */
+                    first.put(key, 3 * i + e);
+                }else{
+                    /* Second triangle at this edge. */
+                    neighbors[3 * i + e] = k / 3;
+                    neighbors[k] = i;
+                }
+            }
+        }
+    }
+    /**
+     * Seek the edges of the current triangle which are not shared with a
+     * neighbor covering some area. The pixels of such an edge belong to 
+     * the current triangle in any case.
+     * @return Bit i set => edge i always owns its pixels.
      */
-    private static Point merge(Point p1, Point p2){
-        return new Point(
-            (int)(p1.x * (1.0 - ratio) + p2.x * ratio), 
-            (int)(p1.y * (1.0 - ratio) + p2.y * ratio));
+    private static int getInclusive(){
+        int inclusive = 0, k;
+        for(int e = 0; e < 3; ++e){
+            k = neighbors[3 * t_idx + e];
+            if(0 > k || !table.isValid(k)){
+                inclusive |= 1 << e;
+            }
+        }
+        return inclusive;
     }
     /**
-     * Merge all points of a triangle.
+     * Merge all pixels of a triangle. Choose the cheapest way depending on
+     * the clip ratios below the triangle.
      */
     private static void triangle(){
-        CTriangle result = CConfig.result_triangles.get(t_idx);
-        /* Left transformation matrix. */
-        left_trafo = CGeo.getTrafo(CConfig.left_triangles.get(t_idx), result);
-        /* Right transformation matrix. */
-        right_trafo = CGeo.getTrafo(CConfig.right_triangles.get(t_idx), result);
-        /* For all target points. */
-        withins = result.getWithins();
-        for(Point p: withins){
-            result_point = p;
-            /* Transform left. */
-            left_point = CGeo.getOrigin_(result_point, left_trafo);
-            /* Transform right. */
-            right_point = CGeo.getOrigin_(result_point, right_trafo);
-            /* Merge both pixels. */
+        if(!raster()){
+            return;
+        }
+        int 
+            l_lod = getLevel(table.getLeft(), left_pyramid.length),
+            r_lod = getLevel(table.getRight(), right_pyramid.length);
+        left_level = left_pyramid[l_lod];
+        right_level = right_pyramid[r_lod];
+        scale(table.getLeft(), l_lod, left_matrix);
+        scale(table.getRight(), r_lod, right_matrix);
+        if(null != acc){
+            /* One sample inside, several samples near the edges. */
+            span_lo = rasterizer.getInLo();
+            span_hi = rasterizer.getInHi();
+            span_first = rasterizer.getInFirst();
+            edges();
+        }else{
+            span_lo = rasterizer.getXLo();
+            span_hi = rasterizer.getXHi();
+            span_first = rasterizer.getXFirst();
+        }
+        /* Warped pictures keep the clip ratio for dissolve(). */
+        if(WARP_LEFT == warp){
+            copy(left_matrix, left_level, 0);
+            return;
+        }
+        if(WARP_RIGHT == warp){
+            copy(right_matrix, right_level, 0);
+            return;
+        }
+        /* Masked merge near the smoothed polygon contour. */
+        if(left_max[l_lod][t_idx] != left_min[l_lod][t_idx] ||
+            right_max[r_lod][t_idx] != right_min[r_lod][t_idx]){
             merge();
-        }   
+            return;
+        }
+        /* Both clip ratios are constant => constant weights. */
+        left_weight = weights
+            [(left_min[l_lod][t_idx] << 8) | right_min[r_lod][t_idx]];
+        right_weight = WEIGHT_ONE - left_weight;
+        if(0 == right_weight){
+            /* Left pixels only. */
+            copy(left_matrix, left_level, 0xff000000);
+        }else if(0 == left_weight){
+            /* Right pixels only. */
+            copy(right_matrix, right_level, 0xff000000);
+        }else{
+            /* Cross dissolve without clip matrix access. */
+            dissolve();
+        }
+    }
+    /**
+     * Scan convert the current result triangle.
+     * @return <code>false</code> if the triangle owns no pixel.
+     */
+    private static boolean raster(){
+        int 
+            p[] = table.getResultPoints(), 
+            k = CTransformTable.STRIDE * t_idx;
+        /* Degenerated triangle covers no area. */
+        if(!table.isValid(t_idx)){
+            return false;
+        }
+        /* Spans of the result pixels owned by this triangle. */
+        return rasterizer.raster(
+            p[k], p[k + 1], p[k + 2], p[k + 3], p[k + 4], p[k + 5],
+            getInclusive());
+    }
+    /**
+     * Copy the pixels of one input picture into the current result triangle.
+     * @param trafo Transformation matrixes from result to input picture.
+     * @param source Input picture.
+     * @param alpha <code>0xff000000</code> for opaque pixels, 
+     * <code>0</code> to keep the clip ratio as alpha.
+     */
+    private static void copy(double trafo[], CSource source, int alpha){
+        int 
+            lo[] = span_lo,
+            hi[] = span_hi,
+            /* Fixed point steps of the source point per result column. */
+            du = CSource.fix(trafo[0]),
+            dv = CSource.fix(trafo[3]),
+            u, v;
+        for(int y = rasterizer.getYMin(); y <= rasterizer.getYMax(); ++y){
+            u = start(trafo, 0, y, du);
+            v = start(trafo, 3, y, dv);
+            for(int x = lo[y], i = y * result_width + x; x <= hi[y]; 
+                ++x, ++i, u += du, v += dv){
+                result_pixels[i] = alpha | source.sample(u, v);
+            }
+        }
+    }
+    /**
+     * Calculate the source coordinate of the first pixel of a span. The
+     * steps are counted from the first pixel of the whole output picture's
+     * span, so an area renders exactly like the same area of the whole 
+     * picture.
+     * @param m Transformation matrix from output to input picture.
+     * @param k <code>0</code> for the x coordinate, <code>3</code> for y.
+     * @param y Row within the rendered area.
+     * @param d Fixed point step of the coordinate per column.
+     * @return Fixed point coordinate.
+     */
+    private static int start(double m[], int k, int y, int d){
+        int first = Math.max(span_first[y], -view_x);
+        return CSource.fix((first + view_x) * m[k] + 
+            (y + view_y) * m[k + 1] + m[k + 2]) + (span_lo[y] - first) * d;
+    }
+    /**
+     * Merge the pixels of both input pictures into the current result
+     * triangle using the current constant weights.
+     */
+    private static void dissolve(){
+        double l[] = left_matrix, r[] = right_matrix;
+        int 
+            lo[] = span_lo,
+            hi[] = span_hi,
+            /* Fixed point steps of the source points per result column. */
+            l_du = CSource.fix(l[0]), 
+            l_dv = CSource.fix(l[3]),
+            r_du = CSource.fix(r[0]), 
+            r_dv = CSource.fix(r[3]),
+            l_u, l_v, r_u, r_v;
+        for(int y = rasterizer.getYMin(); y <= rasterizer.getYMax(); ++y){
+            l_u = start(l, 0, y, l_du);
+            l_v = start(l, 3, y, l_dv);
+            r_u = start(r, 0, y, r_du);
+            r_v = start(r, 3, y, r_dv);
+            for(int x = lo[y], i = y * result_width + x; x <= hi[y]; 
+                ++x, ++i, l_u += l_du, l_v += l_dv, r_u += r_du, r_v += r_dv){
+                left_pixel = left_level.sample(l_u, l_v);
+                right_pixel = right_level.sample(r_u, r_v);
+                result_pixels[i] = 
+                    blend(left_pixel, right_pixel, left_weight);
+            }
+        }
     }
     /**
-     * Merge (left.pixel, right.pixel)->(result.pixel). Result depends on
-     * ratio value & both polygon matrixes.
+     * Merge (left.pixel, right.pixel)->(result.pixel) for all pixels of the
+     * current result triangle. Result depends on ratio value & both
+     * polygon matrixes.
      */
     private static void merge(){
-        try{
-            left_pixel = CConfig.left_image.getRGB
-                (left_point.x, left_point.y);
-            right_pixel = CConfig.right_image.getRGB
-                (right_point.x, right_point.y);
-            left_ratio = CConfig.left_clip[left_point.x][left_point.y];
-            right_ratio = CConfig.right_clip[right_point.x][right_point.y];
-            /* Unify all 3 ratios. */
-            double
-                t1 = left_ratio,
-                t2 = 1.0 - left_ratio,
-                t3 = 1.0 - right_ratio,
-                t4 = right_ratio,
-                fl = t3 + (1.0 - ratio) * (t1 - t3),
-                fr = t2 + ratio * (t4 - t2);
-            /* For each color in 32 bit color value. */
-            int 
-                l_r = ( left_pixel & 0xffff0000) >> 16,
-                r_r = (right_pixel & 0xffff0000) >> 16,
-                l_g = ( left_pixel & 0xff00ff00) >> 8,
-                r_g = (right_pixel & 0xff00ff00) >> 8,
-                l_b =   left_pixel & 0xff0000ff,
-                r_b =  right_pixel & 0xff0000ff,
-                r = (int)(l_r * fl + r_r * fr),
-                g = (int)(l_g * fl + r_g * fr),
-                b = (int)(l_b * fl + r_b * fr);
-            /* Set pixel. */
-            result_pixel = (0xff000000) | (r << 16) | (g << 8) | b;    
-            CConfig.result_image.setRGB
-                (result_point.x, result_point.y, result_pixel);
-        }catch(Exception e){}
+        double l[] = left_matrix, r[] = right_matrix;
+        int 
+            lo[] = span_lo,
+            hi[] = span_hi,
+            /* Fixed point steps of the source points per result column. */
+            l_du = CSource.fix(l[0]), 
+            l_dv = CSource.fix(l[3]),
+            r_du = CSource.fix(r[0]), 
+            r_dv = CSource.fix(r[3]),
+            l_u, l_v, r_u, r_v;
+        for(int y = rasterizer.getYMin(); y <= rasterizer.getYMax(); ++y){
+            l_u = start(l, 0, y, l_du);
+            l_v = start(l, 3, y, l_dv);
+            r_u = start(r, 0, y, r_du);
+            r_v = start(r, 3, y, r_dv);
+            for(int x = lo[y], i = y * result_width + x; x <= hi[y]; 
+                ++x, ++i, l_u += l_du, l_v += l_dv, r_u += r_du, r_v += r_dv){
+                /* One fetch for color & clip ratio. */
+                left_pixel = left_level.sample(l_u, l_v);
+                right_pixel = right_level.sample(r_u, r_v);
+                left_ratio = left_pixel >>> 24;
+                right_ratio = right_pixel >>> 24;
+                left_weight = weights[(left_ratio << 8) | right_ratio];
+                result_pixels[i] = 
+                    blend(left_pixel, right_pixel, left_weight);
+            }
+        }
+    }
+    /**
+     * Unify all 3 ratios (ratio & both clip ratios) to the fixed point
+     * weights of the left & right pixel. Both weights sum up to one.
+     */
+    private static void weights(){
+        left_weight = weight(ratio, left_ratio, right_ratio);
+        right_weight = WEIGHT_ONE - left_weight;
+    }
+    /**
+     * Fixed point weight of the left pixel.
+     * @param ratio Ratio of the step (0.0 ... 1.0).
+     * @param l Left clip ratio (0 ... 255).
+     * @param r Right clip ratio (0 ... 255).
+     * @return Left weight, the right weight is the rest to one.
+     */
+    private static int weight(double ratio, int l, int r){
+        double
+            t1 = l / 255.0,
+            t3 = 1.0 - r / 255.0,
+            fl = t3 + (1.0 - ratio) * (t1 - t3);
+        return (int)(fl * WEIGHT_ONE + 0.5);
+    }
+    /**
+     * Provide the weight table of a step to other renderers, so two 
+     * pictures blend like the left & right picture of the morph.
+     * @param ratio Ratio of the step (0.0 ... 1.0).
+     * @return Fixed point left weight for each pair of clip ratios, index
+     * is <code>(left_ratio << 8) | right_ratio</code>.
+     */
+    public static int[] getWeights(double ratio){
+        int lut[] = new int[256 * 256];
+        for(int l = 0; l < 256; ++l){
+            for(int r = 0; r < 256; ++r){
+                lut[(l << 8) | r] = weight(ratio, l, r);
+            }
+        }
+        return lut;
+    }
+    /**
+     * Weighted sum of a left & a right pixel.
+     * @param left_pixel RGB value of the left pixel.
+     * @param right_pixel RGB value of the right pixel.
+     * @param fl Fixed point weight of the left pixel.
+     * @return Result pixel.
+     */
+    public static int blend(int left_pixel, int right_pixel, int fl){
+        int fr = WEIGHT_ONE - fl;
+        /* For each color in 32 bit color value. */
+        int 
+            l_r = (left_pixel >> 16) & 0xff,
+            r_r = (right_pixel >> 16) & 0xff,
+            l_g = (left_pixel >> 8) & 0xff,
+            r_g = (right_pixel >> 8) & 0xff,
+            l_b = left_pixel & 0xff,
+            r_b = right_pixel & 0xff,
+            r = (l_r * fl + r_r * fr + WEIGHT_HALF) >> WEIGHT_SHIFT,
+            g = (l_g * fl + r_g * fr + WEIGHT_HALF) >> WEIGHT_SHIFT,
+            b = (l_b * fl + r_b * fr + WEIGHT_HALF) >> WEIGHT_SHIFT;
+        return (0xff000000) | (r << 16) | (g << 8) | b;
     }
 }
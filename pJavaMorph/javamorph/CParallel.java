@@ -0,0 +1,133 @@
+package javamorph;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * File belongs to javamorph (Merging of human-face-pictures).
+ * Copyright (C) 2009 - 2010  Claus Wimmer
+ * See file ".../help/COPYING" for details!
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA * 
+ *
+ * @version 1.5
+ * <br/>
+ * @author claus.erhard.wimmer@googlemail.com
+ * <br/>
+ * Program: JavaMorph.
+ * <br/>
+ * Class: CParallel.
+ * <br/>
+ * License: GPLv2.
+ * <br/>
+ * Description: Split a loop over an index range onto all processors.
+ * <br/>
+ * Hint: The caller's thread processes the last range itself and waits for
+ * all other ranges to be finished. The other ranges are processed by a 
+ * fixed pool of threads shared by all loops. A loop started by one of 
+ * these threads runs within that thread only, so no thread of the pool 
+ * waits for the pool.
+ */
+public class CParallel {
+    /** Number of processors available to the virtual machine. */
+    public static final int THREADS = 
+        Runtime.getRuntime().availableProcessors();
+    /** Threads processing all but the last range of each loop. */
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(
+        Math.max(1, THREADS - 1), new ThreadFactory(){
+            public Thread newThread(Runnable r){
+                return new Worker(r);
+            }
+        });
+    /**
+     * Process the index range <code>0 .. n - 1</code> in parallel. If the
+     * caller's thread is interrupted, the ranges not yet started are 
+     * skipped, but the running ones are still waited for.
+     * @param n Number of indexes.
+     * @param task Work to do for a part of the indexes.
+     */
+    public static void run(int n, final IRange task){
+        int parts = Math.max(1, Math.min(THREADS, n));
+        /* Nothing to share or already within the pool. */
+        if(1 == parts || Thread.currentThread() instanceof Worker){
+            task.run(0, n);
+            return;
+        }
+        final CountDownLatch done = new CountDownLatch(parts - 1);
+        final AtomicBoolean cancel = new AtomicBoolean();
+        final Throwable errors[] = new Throwable[parts - 1];
+        /* Queue one job for each but the last range. */
+        for(int i = 0; i < errors.length; ++i){
+            final int 
+                k = i, 
+                from = i * n / parts, 
+                to = (i + 1) * n / parts;
+            POOL.execute(new Runnable(){
+                public void run(){
+                    try{
+                        if(!cancel.get()){
+                            task.run(from, to);
+                        }
+                    }catch(Throwable t){
+                        errors[k] = t;
+                    }finally{
+                        done.countDown();
+                    }
+                }
+            });
+        }
+        boolean finished = false;
+        try{
+            /* Process the last range within the caller's thread. */
+            task.run((parts - 1) * n / parts, n);
+            finished = true;
+        }finally{
+            /* Skip the other ranges after a failure of the own one. */
+            cancel.set(!finished);
+            /* No range may still write into the caller's buffers. */
+            boolean interrupted = false;
+            while(0 < done.getCount()){
+                try{
+                    done.await();
+                }catch(InterruptedException e){
+                    interrupted = true;
+                    cancel.set(true);
+                }
+            }
+            if(interrupted){
+                Thread.currentThread().interrupt();
+            }
+        }
+        for(Throwable t: errors){
+            if(null != t){
+                throw new RuntimeException(t);
+            }
+        }
+    }
+    /**
+     * Thread of the pool.
+     */
+    private static class Worker extends Thread{
+        /**
+         * Constructor.
+         * @param r Work of the pool.
+         */
+        public Worker(Runnable r){
+            super(r, "CParallel");
+            /* Don't keep the application alive. */
+            this.setDaemon(true);
+        }
+    }
+}
@@ -5,7 +5,6 @@ import java.awt.*;
 import java.awt.event.*;
 import java.awt.geom.*;
 import java.awt.image.*;
-import javax.imageio.*;
 import javax.swing.*;
 import java.util.*;
 
@@ -49,6 +48,8 @@ public class CPolygonDecorator
     public static final Color POLYGON_COLOR = Color.cyan;
     /** Color of the polygon point move cursor. */
     public static final Color CURSOR_COLOR= Color.red;
+    /** Number of box blurs in a row when smoothing by box. */
+    public static final int BOX_PASSES = 3;
     /** Parent component to draw the polygon to. */
     private CFrame parent;
     /** Index of the current polygon point which has the cursor. */
@@ -97,6 +98,25 @@ public class CPolygonDecorator
         parent.addMouseListener(this);
         parent.addMouseMotionListener(this);
     }
+    /**
+     * Constructor without display for batch jobs. Nothing is saved after
+     * shutdown & no debug copy of the clip matrix is written.
+     * 
+     * @param polygon Receives the points of the clip polygon.
+     * @param image Picture of the own side.
+     * @param f_poly File to load the polygon from, default polygon if 
+     * missing or <code>null</code>.
+     * @param clip Smoothed clip matrix.
+     */
+    public CPolygonDecorator(Vector<Point> polygon, BufferedImage image, 
+            File f_poly, double clip[][]){
+        this.polygon = polygon;
+        this.image = image;
+        this.clip = clip;
+        this.f_poly = f_poly;
+        if(null != f_poly && f_poly.exists())load();
+        else init();
+    }
     /**
      * Ensures that the cursor points to a valid polygon point.
      */
@@ -152,6 +172,7 @@ public class CPolygonDecorator
             parent.scalePoint(p);
             q.x = p.x;
             q.y = p.y;
+            parent.getParent().edited(true);
             parent.repaint();
         }
     }
@@ -194,28 +215,36 @@ public class CPolygonDecorator
         /* Fill the polygon. */
         fill();
         /* Smooth the edges of the polygon depending on the configuration. */
-        for(int i = 0; i < polygon.size(); ++i){
-            smoothLine(polygon.get(i), polygon.get((i +1) % polygon.size()));
+        if(CConfig.SMOOTH_BOX == CConfig.SMOOTH_MODE){
+            smoothBox();
+        }else{
+            for(int i = 0; i < polygon.size(); ++i){
+                smoothLine
+                    (polygon.get(i), polygon.get((i +1) % polygon.size()));
+            }
         }
-        /* Save the debug copy. */
-        try{
-            BufferedImage im = new BufferedImage(clip.length,clip[0].length, 
-                        BufferedImage.TYPE_INT_ARGB);
-            for(int x = 0; x < clip.length; ++x){
-                for(int y = 0; y < clip[0].length; ++y){
-                    int rgb =
-                        0xff000000 |
-                        (int)(clip[x][y] * 255) << 16 |
-                        (int)(clip[x][y] * 255) << 8 |
-                        (int)(clip[x][y] * 255);
-                    im.setRGB(x, y, rgb);
-                }
+    }
+    /**
+     * Copy the clip matrix into a gray picture, written to the debug file
+     * in the background. Call after <code>genClip()</code>.
+     */
+    public void debug(){
+        /* No debug file for pictures outside the main window. */
+        if(null == f_clip){
+            return;
+        }
+        int w = clip.length, h = clip[0].length;
+        BufferedImage im = 
+            new BufferedImage(w, h, BufferedImage.TYPE_BYTE_GRAY);
+        /* Write the gray values directly into the picture's raster. */
+        byte data[] = 
+            ((DataBufferByte)im.getRaster().getDataBuffer()).getData();
+        for(int x = 0; x < w; ++x){
+            for(int y = 0; y < h; ++y){
+                data[y * w + x] = (byte)(clip[x][y] * 255);
             }
-            ImageIO.write(im, "png", f_clip);
-        }catch(Exception e){
-            System.err.println(e.getMessage());
-            e.printStackTrace();
         }
+        CArtifactWriter.write(im, "png", f_clip);
     }
     /**
      * Save-on-shutdown-thread.
@@ -415,6 +444,68 @@ public class CPolygonDecorator
             }
         }
     }
+    /**
+     * Smooth the contour of the clip matrix by three box blurs in a row
+     * (approximates a gaussian blur). Columns & rows are done separately by
+     * running sums, so the costs don't depend on the smooth radius.
+     * The blurred contour has the value 0.5, therefore the result is doubled
+     * to keep the polygon's inner at 1.0 & to fade out within the radius.
+     */
+    private void smoothBox(){
+        final int r = Math.max(1, CConfig.SMOOTH_RADIUS / BOX_PASSES);
+        /* Blur the columns, each one is a contiguous array. */
+        CParallel.run(clip.length, new IRange(){
+            public void run(int from, int to){
+                double line[] = new double[clip[0].length];
+                for(int x = from; x < to; ++x){
+                    for(int i = 0; i < BOX_PASSES; ++i){
+                        boxLine(clip[x], line, r);
+                        System.arraycopy(line, 0, clip[x], 0, line.length);
+                    }
+                }
+            }
+        });
+        /* Blur the rows, copied into a line buffer. */
+        CParallel.run(clip[0].length, new IRange(){
+            public void run(int from, int to){
+                double 
+                    line[] = new double[clip.length],
+                    temp[] = new double[clip.length];
+                for(int y = from; y < to; ++y){
+                    for(int x = 0; x < line.length; ++x){
+                        line[x] = clip[x][y];
+                    }
+                    for(int i = 0; i < BOX_PASSES; ++i){
+                        boxLine(line, temp, r);
+                        System.arraycopy(temp, 0, line, 0, line.length);
+                    }
+                    for(int x = 0; x < line.length; ++x){
+                        clip[x][y] = Math.min(1.0, 2.0 * line[x]);
+                    }
+                }
+            }
+        });
+    }
+    /**
+     * Box blur of one line by a running sum. Values beyond the ends of the
+     * line are taken from the end points.
+     * @param src Line to blur.
+     * @param dst Blurred line, same length as the source.
+     * @param r Radius of the box.
+     */
+    private static void boxLine(double src[], double dst[], int r){
+        int n = src.length;
+        double sum = 0.0, scale = 1.0 / (2 * r + 1);
+        /* Fill the box around the first pixel. */
+        for(int i = -r; i <= r; ++i){
+            sum += src[Math.max(0, Math.min(n - 1, i))];
+        }
+        /* Move the box pixel by pixel. */
+        for(int i = 0; i < n; ++i){
+            dst[i] = sum * scale;
+            sum += src[Math.min(n - 1, i + r + 1)] - src[Math.max(0, i - r)];
+        }
+    }
     /**
      * Due to Java API. Perform polygon point operation depending on edit state.
      */
@@ -433,6 +524,7 @@ public class CPolygonDecorator
                     }
                     break;
             }
+            parent.getParent().edited(true);
         }
         parent.getParent().repaint();
     }
@@ -87,6 +87,16 @@ public class CPopupMenuDecorator
     private ButtonGroup g_polygon_buttons = new ButtonGroup();
     /** Morph command. */
     private JMenuItem m_morph = new JMenuItem("Morph!");
+    /** Chain command. */
+    private JMenuItem m_chain = new JMenuItem("Chain!");
+    /** Sweep command. */
+    private JMenuItem m_sweep = new JMenuItem("Sweep!");
+    /** Sequence command. */
+    private JMenuItem m_sequence = new JMenuItem("Sequence!");
+    /** Average command. */
+    private JMenuItem m_average = new JMenuItem("Average!");
+    /** Show preview command. */
+    private JMenuItem m_preview = new JMenuItem("Preview ->");
     /** Edit mesh command. */
     private JRadioButtonMenuItem m_edit_mesh = 
         new JRadioButtonMenuItem("Edit mesh.");
@@ -105,6 +115,11 @@ public class CPopupMenuDecorator
         this.parent = parent;
         /* Initialize the whole pop up menu. */
         popup_menu.add(m_morph);
+        popup_menu.add(m_chain);
+        popup_menu.add(m_sequence);
+        popup_menu.add(m_sweep);
+        popup_menu.add(m_average);
+        popup_menu.add(m_preview);
         popup_menu.addSeparator();
         popup_menu.add(m_edit_mesh);
         popup_menu.add(m_edit_polygon);
@@ -132,6 +147,11 @@ public class CPopupMenuDecorator
         g_polygon_buttons.add(m_off_polygon_points);
         /* Add the listeners. */
         m_morph.addActionListener(this);
+        m_chain.addActionListener(this);
+        m_sequence.addActionListener(this);
+        m_sweep.addActionListener(this);
+        m_average.addActionListener(this);
+        m_preview.addActionListener(this);
         m_edit_mesh.addActionListener(this);
         m_edit_polygon.addActionListener(this);
         m_edit_config.addActionListener(this);
@@ -217,6 +237,25 @@ public class CPopupMenuDecorator
             for(File f: list)f.delete();
             parent.getParent().morph();
         }
+        if(m_chain == e.getSource()){
+            File list[] = new File(CStrings.OUTPUTDIR).listFiles();
+            for(File f: list)f.delete();
+            parent.getParent().chain();
+        }
+        if(m_sequence == e.getSource()){
+            File list[] = new File(CStrings.OUTPUTDIR).listFiles();
+            for(File f: list)f.delete();
+            parent.getParent().sequence();
+        }
+        if(m_sweep == e.getSource()){
+            parent.getParent().sweep();
+        }
+        if(m_average == e.getSource()){
+            parent.getParent().average();
+        }
+        if(m_preview == e.getSource()){
+            parent.getParent().showPreviewDialog();
+        }
         if(m_edit_mesh == e.getSource()){
             CConfig.edit_state = CConfig.EDIT_MESH_OFF;
         }
@@ -242,6 +281,7 @@ public class CPopupMenuDecorator
         if(m_delete_mesh == e.getSource()){
             CConfig.edit_state = CConfig.EDIT_MESH_OFF;
             parent.getParent().initMesh();
+            parent.getParent().edited(false);
         }
         
         if(m_add_polygon_points == e.getSource()){
@@ -256,6 +296,7 @@ public class CPopupMenuDecorator
         if(m_delete_polygon == e.getSource()){
             CConfig.edit_state = CConfig.EDIT_POLYGON_OFF;
             parent.initPolygon();
+            parent.getParent().edited(true);
         }        
         parent.getParent().repaint();
     }
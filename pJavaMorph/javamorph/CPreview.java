@@ -0,0 +1,367 @@
+package javamorph;
+
+import java.awt.*;
+import java.awt.image.*;
+import java.util.*;
+import javax.swing.*;
+import javax.swing.event.*;
+
+/**
+ * File belongs to javamorph (Merging of human-face-pictures).
+ * Copyright (C) 2009 - 2010  Claus Wimmer
+ * See file ".../help/COPYING" for details!
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA * 
+ *
+ * @version 1.5
+ * <br/>
+ * @author claus.erhard.wimmer@googlemail.com
+ * <br/>
+ * Program: JavaMorph.
+ * <br/>
+ * Class: CPreview.
+ * <br/>
+ * License: GPLv2.
+ * <br/>
+ * Description: Non modal dialog showing one step of the morph without
+ * writing files.
+ * <br/>
+ * Hint: A background thread renders the step at 1/8 of the output size
+ * first, then refines to 1/4, 1/2 & full size. The coarse sizes read a 
+ * coarse level of the input pictures. Each edit of mesh or polygon 
+ * cancels the current picture & restarts with 1/8. After a polygon edit 
+ * the 1/8 picture still uses the previous clip matrixes, the full size 
+ * clip matrixes are generated after it. Each picture shown is a new one, 
+ * the render thread never draws into a shown picture. While the ratio
+ * slider is dragged only the screen size is rendered, reusing the 
+ * triangulation. Dragging a mesh point updates the triangulation locally &
+ * renders only the area of the changed triangles into the full size 
+ * picture. The newest request always wins.
+ */
+public class CPreview extends JDialog 
+    implements Runnable, ChangeListener{
+    /** Java API. */
+    private static final long serialVersionUID = 1L;
+    /** Output size divisors, coarse to fine. */
+    public static final int LEVELS[] = {8, 4, 2, 1};
+    /** Left picture's display. */
+    private CFrame left;
+    /** Right picture's display. */
+    private CFrame right;
+    /** Shows the rendered pictures. */
+    private CPreviewPicture picture = new CPreviewPicture();
+    /** Ratio of the shown step in percent. */
+    private JSlider s_ratio = new JSlider(0, 100, CConfig.PREVIEW_RATIO);
+    /** Render thread, <code>null</code> until the dialog is opened. */
+    private Thread thread;
+    /** Number of requests so far. */
+    private int requested;
+    /** Number of the last request the render thread has taken. */
+    private int taken;
+    /** <code>true</code> if the clip matrixes must be generated again. */
+    private boolean f_clip;
+    /** <code>true</code> if the triangulation must be generated again. */
+    private boolean f_mesh;
+    /** <code>true</code> if the latest request comes from dragging. */
+    private boolean f_drag;
+    /** Indices of the mesh points moved since the last request. */
+    private TreeSet<Integer> moved = new TreeSet<Integer>();
+    /** Latest full size picture, <code>null</code> if not up to date. */
+    private BufferedImage frame;
+    /** Ratio of the full size picture in percent. */
+    private int frame_ratio;
+    /** 
+     * Area of the full size picture which must be rendered again, 
+     * <code>null</code> if none.
+     */
+    private Rectangle pending;
+    /**
+     * Constructor.
+     * @param parent Top level window.
+     * @param left Left picture's display.
+     * @param right Right picture's display.
+     */
+    public CPreview(JFrame parent, CFrame left, CFrame right){
+        super(parent, "Preview", false);
+        this.left = left;
+        this.right = right;
+        this.getContentPane().setLayout(new BorderLayout());
+        this.getContentPane().add("Center", picture);
+        this.getContentPane().add("South", s_ratio);
+        this.s_ratio.addChangeListener(this);
+        this.pack();
+    }
+    /**
+     * Show the dialog & render the current state.
+     */
+    public void open(){
+        if(null == thread){
+            thread = new Thread(this, "Preview");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        this.setVisible(true);
+        this.s_ratio.setValue(CConfig.PREVIEW_RATIO);
+        this.restart(true);
+    }
+    /**
+     * Cancel the current picture & render again, if the dialog is shown.
+     * The render thread rebuilds the triangulation & the clip matrixes.
+     * @param clip <code>true</code> if the polygons have changed, 
+     * <code>false</code> if only the meshes have changed.
+     * @return <code>false</code> if the dialog is hidden.
+     */
+    public synchronized boolean restart(boolean clip){
+        if(!this.isVisible()){
+            return false;
+        }
+        f_clip |= clip;
+        f_mesh = true;
+        this.request(false);
+        return true;
+    }
+    /**
+     * Render the triangles around a moved mesh point again, if the dialog 
+     * is shown.
+     * @param index Index of the mesh point.
+     */
+    public synchronized void moved(int index){
+        if(!this.isVisible()){
+            return;
+        }
+        moved.add(index);
+        this.request(false);
+    }
+    /**
+     * The user moves the ratio slider.
+     */
+    public void stateChanged(ChangeEvent e){
+        if(s_ratio == e.getSource()){
+            CConfig.PREVIEW_RATIO = s_ratio.getValue();
+            this.request(s_ratio.getValueIsAdjusting());
+        }
+    }
+    /**
+     * Cancel the current picture & post a new request.
+     * @param drag <code>true</code> to render the screen size only.
+     */
+    private synchronized void request(boolean drag){
+        ++requested;
+        f_drag = drag;
+        CMorphOperator.cancel(true);
+        this.notifyAll();
+    }
+    /**
+     * Thread API. Wait for requests & render each of them coarse to fine.
+     */
+    public void run(){
+        while(true){
+            int request, ratio, points[];
+            boolean clip, mesh, drag;
+            synchronized(this){
+                while(taken == requested){
+                    try{
+                        this.wait();
+                    }catch(InterruptedException e){
+                        return;
+                    }
+                }
+                request = taken = requested;
+                clip = f_clip;
+                mesh = f_mesh;
+                drag = f_drag;
+                ratio = CConfig.PREVIEW_RATIO;
+                points = new int[moved.size()];
+                int k = 0;
+                for(int i: moved){
+                    points[k++] = i;
+                }
+                moved.clear();
+                f_clip = false;
+                f_mesh = false;
+            }
+            try{
+                if(mesh){
+                    synchronized(CMorphOperator.class){
+                        CTriangulation.triangulate();
+                        CMorphOperator.invalidate(false);
+                    }
+                    frame = null;
+                }else if(0 < points.length){
+                    update(points, ratio);
+                }
+                if(clip){
+                    frame = null;
+                    pending = null;
+                    reclip(request, ratio, drag);
+                }else if(null != frame && ratio == frame_ratio && !drag){
+                    patch(request, ratio);
+                }else{
+                    frame = null;
+                    pending = null;
+                    refine(request, ratio, drag, 0);
+                }
+            }catch(Exception e){
+                /* Mesh or polygon has been edited meanwhile. */
+                System.err.println(e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+    /**
+     * Update the triangulation after mesh points have been moved & mark
+     * the area of the changed triangles as pending.
+     * @param points Indices of the moved mesh points.
+     * @param ratio Ratio of the step in percent.
+     */
+    private void update(int points[], int ratio){
+        synchronized(CMorphOperator.class){
+            int dirty[] = CTriangulation.update(points);
+            if(null == dirty){
+                CTriangulation.triangulate();
+                CMorphOperator.invalidate(false);
+                frame = null;
+                return;
+            }
+            CMorphOperator.invalidate(dirty);
+            if(0 == dirty.length){
+                return;
+            }
+            /* The changed triangles cover the same area as before. */
+            CTransformTable table = new CTransformTable
+                (CConfig.left_triangles, CConfig.right_triangles);
+            table.update(ratio / 100.0);
+            Rectangle area = pending;
+            for(int t: dirty){
+                area = null == area ? 
+                    table.getBounds(t) : area.union(table.getBounds(t));
+            }
+            /* Supersampling, inclusive edges & rounding ties of the corners. */
+            area.grow(3, 3);
+            pending = area;
+        }
+    }
+    /**
+     * Render the pending area into the full size picture.
+     * @param request Number of the request.
+     * @param ratio Ratio of the step in percent.
+     */
+    private void patch(int request, int ratio){
+        if(null == pending){
+            return;
+        }
+        int
+            w = CConfig.result_image.getWidth(),
+            h = CConfig.result_image.getHeight();
+        Rectangle roi = pending.intersection(new Rectangle(0, 0, w, h));
+        if(!roi.isEmpty()){
+            BufferedImage im = render(request, ratio, w, h, roi);
+            if(null == im){
+                /* Area stays pending. */
+                return;
+            }
+            /* The shown picture may be painted meanwhile. */
+            BufferedImage next = new BufferedImage
+                (frame.getWidth(), frame.getHeight(), frame.getType());
+            Graphics g = next.getGraphics();
+            g.drawImage(frame, 0, 0, null);
+            g.drawImage(im, roi.x, roi.y, null);
+            g.dispose();
+            frame = next;
+            picture.setImage(frame);
+        }
+        pending = null;
+    }
+    /**
+     * Generate the clip matrixes again & render the current step. The 
+     * first size is rendered before, using the previous clip matrixes if
+     * they are still fused with the pictures.
+     * @param request Number of the request.
+     * @param ratio Ratio of the step in percent.
+     * @param drag <code>true</code> to render the screen size only.
+     */
+    private void reclip(int request, int ratio, boolean drag){
+        int first = 0;
+        if(!drag && CMorphOperator.isPrepared()){
+            BufferedImage im = render(request, ratio, 
+                CConfig.result_image.getWidth() / LEVELS[0], 
+                CConfig.result_image.getHeight() / LEVELS[0], null);
+            if(null != im){
+                picture.setImage(im);
+                first = 1;
+            }
+        }
+        /* Needed by any newer request too. */
+        synchronized(CMorphOperator.class){
+            left.genClip();
+            right.genClip();
+            CMorphOperator.invalidate(true);
+        }
+        refine(request, ratio, drag, first);
+    }
+    /**
+     * Render the current step with increasing size until a newer request
+     * arrives. Keep the full size picture.
+     * @param request Number of the request.
+     * @param ratio Ratio of the step in percent.
+     * @param drag <code>true</code> to render the screen size only.
+     * @param first Index of the first size within <code>LEVELS</code>.
+     */
+    private void refine(int request, int ratio, boolean drag, int first){
+        int
+            w = CConfig.result_image.getWidth(),
+            h = CConfig.result_image.getHeight();
+        BufferedImage im = null;
+        if(drag){
+            Dimension fit = picture.getFittedSize();
+            im = render(request, ratio, 
+                Math.min(w, fit.width), Math.min(h, fit.height), null);
+            if(null != im){
+                picture.setImage(im);
+            }
+            return;
+        }
+        for(int i = first; i < LEVELS.length; ++i){
+            im = render(request, ratio, w / LEVELS[i], h / LEVELS[i], null);
+            if(null == im){
+                return;
+            }
+            picture.setImage(im);
+        }
+        frame = im;
+        frame_ratio = ratio;
+    }
+    /**
+     * Render the current step in one size.
+     * @param request Number of the request.
+     * @param ratio Ratio of the step in percent.
+     * @param width Width of the picture.
+     * @param height Height of the picture.
+     * @param roi Rendered area, <code>null</code> for the whole picture.
+     * @return Rendered area, <code>null</code> if a newer request has 
+     * arrived.
+     */
+    private BufferedImage render
+            (int request, int ratio, int width, int height, Rectangle roi){
+        synchronized(this){
+            if(request != requested){
+                return null;
+            }
+            CMorphOperator.cancel(false);
+        }
+        return CMorphOperator.render(ratio / 100.0, 
+            Math.max(1, width), Math.max(1, height), roi, true);
+    }
+}
@@ -0,0 +1,98 @@
+package javamorph;
+
+import java.awt.*;
+import java.awt.image.*;
+import javax.swing.*;
+
+/**
+ * File belongs to javamorph (Merging of human-face-pictures).
+ * Copyright (C) 2009 - 2010  Claus Wimmer
+ * See file ".../help/COPYING" for details!
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA * 
+ *
+ * @version 1.5
+ * <br/>
+ * @author claus.erhard.wimmer@googlemail.com
+ * <br/>
+ * Program: JavaMorph.
+ * <br/>
+ * Class: CPreviewPicture.
+ * <br/>
+ * License: GPLv2.
+ * <br/>
+ * Description: Shows the latest preview picture, scaled to fit.
+ * <br/>
+ * Hint: Low resolution pictures are stretched to the same size as the full
+ * resolution picture, so refining doesn't change the layout.
+ */
+public class CPreviewPicture extends JComponent{
+    /** Java API. */
+    private static final long serialVersionUID = 1L;
+    /** Size of the component on screen. */
+    public static final Dimension PREF_SIZE = new Dimension(400, 300);
+    /** Color of the area around the picture. */
+    public static final Color BACKGROUND = Color.black;
+    /** Picture to show, <code>null</code> until the first one arrives. */
+    private volatile BufferedImage image;
+    /**
+     * Replace the shown picture. May be called by any thread.
+     * @param image New picture. Must not be modified afterwards.
+     */
+    public void setImage(BufferedImage image){
+        this.image = image;
+        this.repaint();
+    }
+    /**
+     * Draw the picture centered & scaled with constant aspect ratio.
+     */
+    public void paint(Graphics g){
+        Dimension size = this.getSize();
+        BufferedImage im = this.image;
+        g.setColor(BACKGROUND);
+        g.fillRect(0, 0, size.width, size.height);
+        if(null == im){
+            return;
+        }
+        Dimension fit = getFittedSize();
+        int width = fit.width, height = fit.height;
+        ((Graphics2D)g).setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+            RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(im, (size.width - width) / 2, (size.height - height) / 2,
+            width, height, this);
+    }
+    /**
+     * Calculate the screen size of the picture.
+     * @return Largest size within the component with the aspect ratio of
+     * the result picture.
+     */
+    public Dimension getFittedSize(){
+        Dimension size = this.getSize();
+        /* Aspect ratio of the full resolution result picture. */
+        double quotient = (double)CConfig.result_image.getWidth() / 
+            (double)CConfig.result_image.getHeight();
+        if(size.height * quotient < size.width){
+            return new Dimension((int)(size.height * quotient), size.height);
+        }else{
+            return new Dimension(size.width, (int)(size.width / quotient));
+        }
+    }
+    /**
+     * Java API. Constant used as return.
+     */
+    public Dimension getPreferredSize(){
+        return PREF_SIZE;
+    }
+}
@@ -104,6 +104,10 @@ public class CProgress extends JDialog
     public void actionPerformed(ActionEvent e) {
         if(this.b_break == e.getSource()){
             CMorphOperator.doBreak();
+            CChain.doBreak();
+            CSequence.doBreak();
+            CSweep.doBreak();
+            CAverage.doBreak();
             this.close();
         }
     }
@@ -0,0 +1,345 @@
+package javamorph;
+
+/**
+ * File belongs to javamorph (Merging of human-face-pictures).
+ * Copyright (C) 2009 - 2010  Claus Wimmer
+ * See file ".../help/COPYING" for details!
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA * 
+ *
+ * @version 1.5
+ * <br/>
+ * @author claus.erhard.wimmer@googlemail.com
+ * <br/>
+ * Program: JavaMorph.
+ * <br/>
+ * Class: CRasterizer.
+ * <br/>
+ * License: GPLv2.
+ * <br/>
+ * Description: Scan conversion of one triangle by integer edge functions.
+ * <br/>
+ * Hint: Corners in fixed point units (SUB_BITS fractional bits), pixel
+ * (x, y) is sampled at the integer position (x, y). A pixel on an edge
+ * shared by two triangles belongs to exactly one of them (top left rule),
+ * so every pixel of a mesh is rendered once. Edges on the border of the
+ * mesh can be marked inclusive. Spans are clipped to the output bounds.
+ * Optionally the pixels near the edges are classified for anti-aliasing.
+ */
+public class CRasterizer {
+    /** Number of fractional bits of the corner coordinates. */
+    public static final int SUB_BITS = 4;
+    /** Fixed point value of one pixel. */
+    public static final int SUB_ONE = 1 << SUB_BITS;
+    /** Width of the output area. */
+    private int width;
+    /** Height of the output area. */
+    private int height;
+    /** First row of the current triangle. */
+    private int y_min;
+    /** Last row of the current triangle. */
+    private int y_max;
+    /** First column of the span for each row. */
+    private int x_lo[];
+    /** Last column of the span for each row. Empty if < x_lo. */
+    private int x_hi[];
+    /** First column of the span for each row, not clipped to the area. */
+    private int x_first[];
+    /** If <code>true</code> then the inner & outer spans are calculated. */
+    private boolean classify;
+    /** First column of the pixels completely inside for each row. */
+    private int in_lo[];
+    /** Last column of the pixels completely inside for each row. */
+    private int in_hi[];
+    /** 
+     * First column of the pixels completely inside for each row, not 
+     * clipped to the area.
+     */
+    private int in_first[];
+    /** First column of the pixels touching the triangle for each row. */
+    private int out_lo[];
+    /** Last column of the pixels touching the triangle for each row. */
+    private int out_hi[];
+    /** Edge function factor of x for each of the three edges. */
+    private long a[] = new long[3];
+    /** Edge function factor of y for each of the three edges. */
+    private long b[] = new long[3];
+    /** Edge function constant for each of the three edges. */
+    private long c[] = new long[3];
+    /** Minimum edge function value to be inside for each edge. */
+    private long t[] = new long[3];
+    /**
+     * Constructor.
+     * @param width Width of the output area.
+     * @param height Height of the output area.
+     * @param classify If <code>true</code> then calculate the pixels 
+     * completely inside & the pixels touching the triangle too.
+     */
+    public CRasterizer(int width, int height, boolean classify){
+        this.width = width;
+        this.height = height;
+        this.classify = classify;
+        this.x_lo = new int[height];
+        this.x_hi = new int[height];
+        this.x_first = new int[height];
+        if(classify){
+            this.in_lo = new int[height];
+            this.in_hi = new int[height];
+            this.in_first = new int[height];
+            this.out_lo = new int[height];
+            this.out_hi = new int[height];
+        }
+    }
+    /**
+     * Convert a coordinate to fixed point units.
+     * @param v Coordinate in pixel units.
+     * @return Coordinate in fixed point units.
+     */
+    public static int fix(double v){
+        return (int)Math.round(v * SUB_ONE);
+    }
+    /**
+     * Calculate the spans of one triangle.
+     * Edge 0 is p0 -> p1, edge 1 is p1 -> p2, edge 2 is p2 -> p0.
+     * @param x0 X of the 1st corner (fixed point).
+     * @param y0 Y of the 1st corner (fixed point).
+     * @param x1 X of the 2nd corner (fixed point).
+     * @param y1 Y of the 2nd corner (fixed point).
+     * @param x2 X of the 3rd corner (fixed point).
+     * @param y2 Y of the 3rd corner (fixed point).
+     * @param inclusive Bit i set => pixels on edge i always belong to the
+     * triangle (border of the mesh).
+     * @return <code>false</code> if the triangle covers no row.
+     */
+    public boolean raster(
+            int x0, int y0, int x1, int y1, int x2, int y2, int inclusive){
+        return raster(x0, y0, x1, y1, x2, y2, inclusive, 0, height);
+    }
+    /**
+     * Calculate the spans of one triangle within some rows of the output 
+     * area, for example the rows of one thread.
+     * @param x0 X of the 1st corner (fixed point).
+     * @param y0 Y of the 1st corner (fixed point).
+     * @param x1 X of the 2nd corner (fixed point).
+     * @param y1 Y of the 2nd corner (fixed point).
+     * @param x2 X of the 3rd corner (fixed point).
+     * @param y2 Y of the 3rd corner (fixed point).
+     * @param inclusive Bit i set => pixels on edge i always belong to the
+     * triangle (border of the mesh).
+     * @param from First row (inclusive).
+     * @param to Last row (exclusive).
+     * @return <code>false</code> if the triangle covers none of the rows.
+     */
+    public boolean raster(int x0, int y0, int x1, int y1, int x2, int y2, 
+            int inclusive, int from, int to){
+        long area = 
+            (long)(x1 - x0) * (y2 - y0) - (long)(x2 - x0) * (y1 - y0);
+        /* Degenerated triangle owns no pixel. */
+        if(0 == area){
+            return false;
+        }
+        /* Vertical range, clipped to the rows. */
+        int 
+            half = classify ? SUB_ONE >> 1 : 0,
+            top = Math.min(y0, Math.min(y1, y2)) - half,
+            bottom = Math.max(y0, Math.max(y1, y2)) + half;
+        y_min = Math.max(Math.max(0, from), ceil(top));
+        y_max = Math.min(Math.min(height, to) - 1, floor(bottom));
+        if(y_min > y_max){
+            return false;
+        }
+        edge(0, x0, y0, x1, y1, area, 0 != (inclusive & 1));
+        edge(1, x1, y1, x2, y2, area, 0 != (inclusive & 2));
+        edge(2, x2, y2, x0, y0, area, 0 != (inclusive & 4));
+        for(int y = y_min; y <= y_max; ++y){
+            span(y, 0, x_lo, x_hi, x_first);
+            if(classify){
+                /* Pixel squares completely inside / touching the edges. */
+                span(y, -half, in_lo, in_hi, in_first);
+                span(y, half, out_lo, out_hi, null);
+            }
+        }
+        return true;
+    }
+    /**
+     * Test whether one point is owned by the current triangle.
+     * @param px X (fixed point).
+     * @param py Y (fixed point).
+     * @return <code>true</code> if inside.
+     */
+    public boolean inside(int px, int py){
+        for(int i = 0; i < 3; ++i){
+            if(a[i] * px + b[i] * py + c[i] < t[i]){
+                return false;
+            }
+        }
+        return true;
+    }
+    /**
+     * Calculate the span of one row.
+     * @param y Row.
+     * @param d Distance (fixed point) the pixel square's corners reach
+     * beyond the pixel position, negative => whole square inside.
+     * @param x_lo Receives the first column of the span.
+     * @param x_hi Receives the last column of the span.
+     * @param x_first Receives the first column of the span not clipped to
+     * the left border, <code>null</code> if not needed.
+     */
+    private void span(int y, int d, int x_lo[], int x_hi[], int x_first[]){
+        int hi = width - 1;
+        long py = (long)y << SUB_BITS, first = Integer.MIN_VALUE;
+        /* Inside: a * px + b * py + c + d * (|a| + |b|) >= t, all edges. */
+        for(int i = 0; i < 3; ++i){
+            long 
+                k = b[i] * py + c[i] - t[i] + 
+                    d * (Math.abs(a[i]) + Math.abs(b[i])), 
+                s = a[i] << SUB_BITS;
+            if(0 < s){
+                first = Math.max(first, -floorDiv(k, s));
+            }else if(0 > s){
+                hi = (int)Math.max(-1, Math.min(hi, floorDiv(k, -s)));
+            }else if(0 > k){
+                hi = -1;
+            }
+        }
+        first = Math.min(Integer.MAX_VALUE, first);
+        x_lo[y] = (int)Math.min(width, Math.max(0, first));
+        x_hi[y] = hi;
+        if(null != x_first){
+            x_first[y] = (int)first;
+        }
+    }
+    /**
+     * Set up one edge function. The sign is chosen so that the inner of
+     * the triangle is positive.
+     * @param i Index of the edge.
+     * @param xa X of the edge's start.
+     * @param ya Y of the edge's start.
+     * @param xb X of the edge's end.
+     * @param yb Y of the edge's end.
+     * @param area Doubled signed area of the triangle.
+     * @param inclusive <code>true</code> if the edge always owns its pixels.
+     */
+    private void edge(int i, int xa, int ya, int xb, int yb, long area, 
+            boolean inclusive){
+        long sign = 0 < area ? 1 : -1;
+        a[i] = sign * (ya - yb);
+        b[i] = sign * (xb - xa);
+        c[i] = -(a[i] * xa + b[i] * ya);
+        /* Top left rule: Only one of both triangles owns a shared edge. */
+        if(inclusive || 0 < a[i] || (0 == a[i] && 0 < b[i])){
+            t[i] = 0;
+        }else{
+            t[i] = 1;
+        }
+    }
+    /**
+     * Get function.
+     * @return First row of the triangle.
+     */
+    public int getYMin(){
+        return this.y_min;
+    }
+    /**
+     * Get function.
+     * @return Last row of the triangle.
+     */
+    public int getYMax(){
+        return this.y_max;
+    }
+    /**
+     * Get function.
+     * @return First column of the span for each row.
+     */
+    public int[] getXLo(){
+        return this.x_lo;
+    }
+    /**
+     * Get function.
+     * @return Last column of the span for each row.
+     */
+    public int[] getXHi(){
+        return this.x_hi;
+    }
+    /**
+     * Get function.
+     * @return First column of the span for each row, not clipped to the 
+     * left border.
+     */
+    public int[] getXFirst(){
+        return this.x_first;
+    }
+    /**
+     * Get function.
+     * @return First column of the pixels completely inside for each row.
+     */
+    public int[] getInLo(){
+        return this.in_lo;
+    }
+    /**
+     * Get function.
+     * @return Last column of the pixels completely inside for each row.
+     */
+    public int[] getInHi(){
+        return this.in_hi;
+    }
+    /**
+     * Get function.
+     * @return First column of the pixels completely inside for each row, 
+     * not clipped to the left border.
+     */
+    public int[] getInFirst(){
+        return this.in_first;
+    }
+    /**
+     * Get function.
+     * @return First column of the pixels touching the triangle for each row.
+     */
+    public int[] getOutLo(){
+        return this.out_lo;
+    }
+    /**
+     * Get function.
+     * @return Last column of the pixels touching the triangle for each row.
+     */
+    public int[] getOutHi(){
+        return this.out_hi;
+    }
+    /**
+     * Smallest pixel position not less than a fixed point coordinate.
+     * @param v Fixed point coordinate.
+     * @return Pixel position.
+     */
+    private static int ceil(int v){
+        return -(-v >> SUB_BITS);
+    }
+    /**
+     * Largest pixel position not greater than a fixed point coordinate.
+     * @param v Fixed point coordinate.
+     * @return Pixel position.
+     */
+    private static int floor(int v){
+        return v >> SUB_BITS;
+    }
+    /**
+     * Division rounding towards negative infinity.
+     * @param n Numerator.
+     * @param d Denominator, positive.
+     * @return Quotient.
+     */
+    private static long floorDiv(long n, long d){
+        return 0 <= n ? n / d : -((d - 1 - n) / d);
+    }
+}
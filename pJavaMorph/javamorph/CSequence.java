@@ -0,0 +1,389 @@
+package javamorph;
+
+import java.awt.*;
+import java.awt.image.*;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import javax.imageio.*;
+import javax.swing.*;
+
+/**
+ * File belongs to javamorph (Merging of human-face-pictures).
+ * Copyright (C) 2009 - 2010  Claus Wimmer
+ * See file ".../help/COPYING" for details!
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA * 
+ *
+ * @version 1.5
+ * <br/>
+ * @author claus.erhard.wimmer@googlemail.com
+ * <br/>
+ * Program: JavaMorph.
+ * <br/>
+ * Class: CSequence.
+ * <br/>
+ * License: GPLv2.
+ * <br/>
+ * Description: Morph a numbered picture sequence into another one, for
+ * example two video clips. Output picture i merges left & right picture 
+ * i, the ratio runs from the left to the right sequence.
+ * <br/>
+ * Hint: Each picture may have its own mesh & polygon file beside it. 
+ * Meshes are interpolated linearly between the pictures owning one, a
+ * picture without polygon uses the polygon of the picture before. Decode,
+ * triangulate, render & encode run as pipeline stages in threads of their 
+ * own, connected by short queues, so the memory doesn't depend on the 
+ * length of the sequences. The pictures are rendered by CAverage, which 
+ * blends like the morph, but ignores SUPERSAMPLING, MIPMAP & RENDER_MODE.
+ */
+public class CSequence implements Runnable{
+    /** Number of pictures waiting between two stages. */
+    public static final int QUEUE = 2;
+    /** Marks the end of the pictures within a queue. */
+    private static final Step END = new Step(-1);
+    /** Application's main class. */
+    private static CMain parent;
+    /** Progress bar to show the number of written pictures. */
+    private static CProgress progress;
+    /** <code>true</code> if the user has aborted the sequence. */
+    private static volatile boolean f_break;
+    /** <code>true</code> if any stage has failed, stops all stages. */
+    private static volatile boolean f_error;
+    /** Left sequence, sorted by name. */
+    private File left[];
+    /** Right sequence, sorted by name. */
+    private File right[];
+    /** Number of output pictures. */
+    private int size;
+    /**
+     * Initialize the sequence before starting the thread.
+     * @param parent Application's main class.
+     * @param progress Progress bar.
+     */
+    public static void sequence(CMain parent, CProgress progress){
+        CSequence.parent = parent;
+        CSequence.progress = progress;
+    }
+    /**
+     * Enable abort of the sequence forced by user.
+     */
+    public static void doBreak(){
+        f_break = true;
+    }
+    /**
+     * Thread API. Render the sequences of the sequence directory.
+     */
+    public void run(){
+        f_break = false;
+        try{
+            render(CStrings.SEQUENCE_LEFT, CStrings.SEQUENCE_RIGHT);
+            progress.close();
+        }catch(Exception e){
+            System.err.println(e.getMessage());
+            e.printStackTrace();
+            progress.close();
+            JOptionPane.showMessageDialog(parent, 
+                    "Can't render the sequence. Please see console output!");
+        }
+    }
+    /**
+     * Render two sequences into the output directory.
+     * @param left Directory of the left pictures, meshes & polygons.
+     * @param right Directory of the right pictures, meshes & polygons.
+     * @throws Exception If the pictures can't be read or written.
+     */
+    public static void render(String left, String right) throws Exception{
+        final CSequence job = new CSequence();
+        job.left = list(left);
+        job.right = list(right);
+        job.size = Math.min(job.left.length, job.right.length);
+        if(0 == job.size){
+            throw new FileNotFoundException("No pictures in " + left + 
+                " or " + right);
+        }
+        BlockingQueue<Step> 
+            numbers = new LinkedBlockingQueue<Step>(),
+            decoded = new ArrayBlockingQueue<Step>(QUEUE),
+            triangulated = new ArrayBlockingQueue<Step>(QUEUE),
+            rendered = new ArrayBlockingQueue<Step>(QUEUE);
+        for(int i = 0; i < job.size; ++i){
+            numbers.add(new Step(i));
+        }
+        numbers.add(END);
+        f_error = false;
+        Stage stages[] = {
+            new Stage("Decode", numbers, decoded){
+                protected Step work(Step step) throws Exception{
+                    job.decode(step);
+                    return step;
+                }
+            },
+            new Stage("Triangulate", decoded, triangulated){
+                protected Step work(Step step){
+                    /* 50% mesh, like left & right. */
+                    step.indices = 
+                        step.pictures.triangulate(new double[]{0.5, 0.5});
+                    return step;
+                }
+            },
+            new Stage("Render", triangulated, rendered){
+                protected Step work(Step step){
+                    step.image = step.pictures.render(step.indices, 
+                        new double[]{1.0 - step.ratio, step.ratio}, true);
+                    step.pictures = null;
+                    step.indices = null;
+                    return step;
+                }
+            },
+            new Stage("Encode", rendered, null){
+                protected Step work(Step step) throws Exception{
+                    ImageIO.write(step.image, CFrameCache.FORMAT, 
+                        new File(CStrings.getOutput(step.index)));
+                    /* No progress bar without the user interface. */
+                    if(null != progress){
+                        progress.setProgress(step.index + 1, 0, job.size);
+                    }
+                    return step;
+                }
+            }
+        };
+        for(Stage s: stages){
+            s.start();
+        }
+        for(Stage s: stages){
+            s.join();
+        }
+        for(Stage s: stages){
+            if(null != s.error){
+                throw new Exception(s.getName() + " failed.", s.error);
+            }
+        }
+    }
+    /**
+     * Read the pictures of one step & generate their clip matrixes.
+     * @param step The step, receives pictures, meshes & ratio.
+     * @throws IOException If a picture can't be read.
+     */
+    private void decode(Step step) throws IOException{
+        int i = step.index;
+        CSource sources[] = new CSource[2];
+        Vector<Vector<Point>> meshes = new Vector<Vector<Point>>();
+        int width = 0, height = 0;
+        File frames[][] = {left, right};
+        for(int k = 0; k < frames.length; ++k){
+            BufferedImage image = ImageIO.read(frames[k][i]);
+            if(null == image){
+                throw new IOException("Can't read " + frames[k][i]);
+            }
+            double clip[][] = 
+                new double[image.getWidth()][image.getHeight()];
+            new CPolygonDecorator(new Vector<Point>(), image, 
+                getFile(frames[k], seek(frames[k], i, ".pol"), ".pol"), 
+                clip).genClip();
+            sources[k] = new CSource(image, clip, CConfig.EDGE_MODE, 
+                CConfig.SOURCE_LAYOUT, CConfig.FILTER_MODE, 1);
+            meshes.add(getMesh(frames[k], i, image));
+            width = Math.max(width, image.getWidth());
+            height = Math.max(height, image.getHeight());
+        }
+        step.pictures = new CAverage(sources, meshes, 
+            new String[]{left[i].getName(), right[i].getName()}, 
+            width, height);
+        step.ratio = 1 < size ? (double)i / (size - 1) : 0.0;
+    }
+    /**
+     * Provide the mesh of one picture. Interpolated linearly between the
+     * nearest pictures owning a mesh file.
+     * @param frames Sequence.
+     * @param i Index of the picture.
+     * @param image The picture, to limit the points.
+     * @return The mesh, grid mesh if no picture owns a mesh file.
+     */
+    private static Vector<Point> getMesh
+            (File frames[], int i, BufferedImage image){
+        int p = seek(frames, i, ".msh"), q = i;
+        /* Next picture owning a mesh. */
+        while(q < frames.length && null == getFile(frames, q, ".msh")){
+            ++q;
+        }
+        Vector<Point> a = new Vector<Point>(), b = new Vector<Point>();
+        if(p == q || 0 > p || q == frames.length){
+            /* Owns a mesh, before the first or behind the last one. */
+            new CMeshDecorator(a, image, getFile(frames, 
+                0 > p && q < frames.length ? q : p, ".msh"));
+            return a;
+        }
+        new CMeshDecorator(a, image, getFile(frames, p, ".msh"));
+        new CMeshDecorator(b, image, getFile(frames, q, ".msh"));
+        if(a.size() != b.size()){
+            throw new IllegalArgumentException(
+                "Meshes differ in the number of points: " + frames[p] + 
+                ", " + frames[q]);
+        }
+        double t = (double)(i - p) / (q - p);
+        for(int j = 0; j < a.size(); ++j){
+            Point pa = a.get(j), pb = b.get(j);
+            pa.x = (int)(pa.x + t * (pb.x - pa.x));
+            pa.y = (int)(pa.y + t * (pb.y - pa.y));
+        }
+        return a;
+    }
+    /**
+     * Seek the nearest picture at or before one picture owning a file.
+     * @param frames Sequence.
+     * @param i Index of the picture.
+     * @param ext Extension of the file.
+     * @return Index of the picture, <code>-1</code> if none.
+     */
+    private static int seek(File frames[], int i, String ext){
+        while(0 <= i && null == getFile(frames, i, ext)){
+            --i;
+        }
+        return i;
+    }
+    /**
+     * Find the file beside a picture.
+     * @param frames Sequence.
+     * @param i Index of the picture, <code>-1</code> if none.
+     * @param ext Extension of the file.
+     * @return Same path & name as the picture, other extension. 
+     * <code>null</code> if there is no such file => default mesh or 
+     * polygon.
+     */
+    private static File getFile(File frames[], int i, String ext){
+        if(0 > i){
+            return null;
+        }
+        String name = frames[i].getName();
+        if(0 < name.lastIndexOf('.')){
+            name = name.substring(0, name.lastIndexOf('.'));
+        }
+        File f = new File(frames[i].getParentFile(), name + ext);
+        return f.exists() ? f : null;
+    }
+    /**
+     * List the pictures of a directory.
+     * @param path Directory path.
+     * @return Pictures sorted by name.
+     * @throws FileNotFoundException If the directory can't be created.
+     */
+    private static File[] list(String path) throws FileNotFoundException{
+        File f_dir = new File(path);
+        /* Work directories of older versions lack the directory. */
+        f_dir.mkdirs();
+        File dir[] = f_dir.listFiles();
+        if(null == dir){
+            throw new FileNotFoundException(path);
+        }
+        HashSet<String> suffixes = new HashSet<String>();
+        for(String s: ImageIO.getReaderFileSuffixes()){
+            suffixes.add(s.toLowerCase());
+        }
+        Vector<File> result = new Vector<File>();
+        for(File f: dir){
+            String name = f.getName().toLowerCase();
+            if(f.isFile() && 
+                suffixes.contains(name.substring(name.lastIndexOf('.') + 1))){
+                result.add(f);
+            }
+        }
+        File frames[] = result.toArray(new File[0]);
+        Arrays.sort(frames);
+        return frames;
+    }
+    /**
+     * Data of one output picture passed from stage to stage.
+     */
+    private static class Step{
+        /** Index of the output picture. */
+        private int index;
+        /** Ratio, <code>0.0</code> = left, <code>1.0</code> = right. */
+        private double ratio;
+        /** Decoded pictures & meshes. */
+        private CAverage pictures;
+        /** Triangulation of the 50% mesh. */
+        private Vector<int[]> indices;
+        /** Rendered picture. */
+        private BufferedImage image;
+        /**
+         * Constructor.
+         * @param index Index of the output picture.
+         */
+        public Step(int index){
+            this.index = index;
+        }
+    }
+    /**
+     * Thread processing the steps one by one. After an error in any stage 
+     * or an abort the remaining steps are skipped by all stages, but the 
+     * end is passed on, so no stage waits forever.
+     */
+    private static abstract class Stage extends Thread{
+        /** Steps to process. */
+        private BlockingQueue<Step> in;
+        /** Processed steps, <code>null</code> for the last stage. */
+        private BlockingQueue<Step> out;
+        /** Problem which occurred during the work, otherwise null. */
+        private Throwable error;
+        /**
+         * Constructor.
+         * @param name Name of the thread.
+         * @param in Steps to process.
+         * @param out Processed steps, <code>null</code> for the last stage.
+         */
+        public Stage(String name, BlockingQueue<Step> in, 
+                BlockingQueue<Step> out){
+            super(name);
+            this.in = in;
+            this.out = out;
+        }
+        /**
+         * Thread API.
+         */
+        public void run(){
+            try{
+                for(Step s = in.take(); END != s; s = in.take()){
+                    /* Drain the queue after the first failure anywhere. */
+                    if(f_error || f_break){
+                        continue;
+                    }
+                    try{
+                        s = work(s);
+                        if(null != out){
+                            out.put(s);
+                        }
+                    }catch(Throwable t){
+                        error = t;
+                        f_error = true;
+                    }
+                }
+                if(null != out){
+                    out.put(END);
+                }
+            }catch(InterruptedException e){
+                error = e;
+                f_error = true;
+            }
+        }
+        /**
+         * Process one step.
+         * @param step The step.
+         * @return The processed step.
+         * @throws Exception If the step can't be processed.
+         */
+        protected abstract Step work(Step step) throws Exception;
+    }
+}
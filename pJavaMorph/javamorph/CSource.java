@@ -0,0 +1,397 @@
+package javamorph;
+
+import java.awt.image.*;
+
+/**
+ * File belongs to javamorph (Merging of human-face-pictures).
+ * Copyright (C) 2009 - 2010  Claus Wimmer
+ * See file ".../help/COPYING" for details!
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA * 
+ *
+ * @version 1.5
+ * <br/>
+ * @author claus.erhard.wimmer@googlemail.com
+ * <br/>
+ * Program: JavaMorph.
+ * <br/>
+ * Class: CSource.
+ * <br/>
+ * License: GPLv2.
+ * <br/>
+ * Description: Input picture prepared for the morph process.
+ * <br/>
+ * Hint: Packed RGB pixels row by row or in tiles. The alpha channel holds the
+ * smoothed clip ratio quantized to 8 bit, so one fetch delivers color &
+ * ratio.
+ * Points outside the picture are mapped depending on the edge mode, one
+ * transparent pixel is appended behind all pixels therefore.
+ */
+public class CSource {
+    /** Bits of the tile size in the tiled layout. */
+    public static final int TILE_BITS = 3;
+    /** Tile size (width & height) in the tiled layout. */
+    public static final int TILE_SIZE = 1 << TILE_BITS;
+    /** Fraction bits of the fixed point sample coordinates. */
+    public static final int FIX_BITS = 16;
+    /** Fixed point value of the coordinate <code>1.0</code>. */
+    public static final int FIX_ONE = 1 << FIX_BITS;
+    /** Fixed point value of the coordinate <code>0.5</code>. */
+    public static final int FIX_HALF = FIX_ONE >> 1;
+    /** Fixed point shift of the bicubic weights. */
+    private static final int CUBIC_SHIFT = 12;
+    /** Fixed point value of the bicubic weight <code>0.5</code>. */
+    private static final int CUBIC_HALF = 1 << (CUBIC_SHIFT - 1);
+    /** 
+     * Catmull-Rom weights of the four neighbor pixels for each 8 bit 
+     * fraction, four entries per fraction.
+     */
+    private static final int CUBIC[] = new int[256 * 4];
+    /** Width of the picture. */
+    private int width;
+    /** Height of the picture. */
+    private int height;
+    /** ARGB pixels, alpha = clip ratio (0 ... 255). See layout. */
+    private int pixels[];
+    /** Treatment of points outside the picture, see CConfig.EDGE_*. */
+    private int mode;
+    /** Interpolation between the pixels, see CConfig.FILTER_*. */
+    private int filter;
+    /** Index of the transparent pixel behind the picture's pixels. */
+    private int outside;
+    /** Part of the pixel index depending on the column. */
+    private int x_off[];
+    /** Part of the pixel index depending on the row. */
+    private int y_off[];
+    /** Same picture in half the size, <code>null</code> if none. */
+    private CSource coarser;
+    /** Static init() of the bicubic weights. */
+    static{
+        for(int f = 0; f < 256; ++f){
+            double t = f / 256.0;
+            int
+                w0 = (int)Math.round
+                    ((-t * t * t + 2 * t * t - t) / 2 * (1 << CUBIC_SHIFT)),
+                w2 = (int)Math.round
+                    ((-3 * t * t * t + 4 * t * t + t) / 2 * (1 << CUBIC_SHIFT)),
+                w3 = (int)Math.round
+                    ((t * t * t - t * t) / 2 * (1 << CUBIC_SHIFT));
+            CUBIC[4 * f] = w0;
+            /* Sum of all weights is exactly one. */
+            CUBIC[4 * f + 1] = (1 << CUBIC_SHIFT) - w0 - w2 - w3;
+            CUBIC[4 * f + 2] = w2;
+            CUBIC[4 * f + 3] = w3;
+        }
+    }
+    /**
+     * Constructor. Copy the picture & fuse the clip matrix into it.
+     * @param image Input picture.
+     * @param clip Smoothed clip matrix of the picture (column / row).
+     * @param mode Treatment of points outside the picture.
+     * @param layout Order of the pixels in memory, see CConfig.LAYOUT_*.
+     * @param filter Interpolation between the pixels.
+     * @param levels Maximum number of pyramid levels including this one,
+     * <code>1</code> = no pyramid.
+     */
+    public CSource(BufferedImage image, double clip[][], 
+            int mode, int layout, int filter, int levels){
+        this.width = image.getWidth();
+        this.height = image.getHeight();
+        this.mode = mode;
+        this.filter = filter;
+        genOffsets(layout);
+        int row[] = new int[width];
+        for(int y = 0; y < height; ++y){
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for(int x = 0; x < width; ++x){
+                int a = (int)(clip[x][y] * 255.0 + 0.5);
+                pixels[y_off[y] + x_off[x]] = (a << 24) | (row[x] & 0xffffff);
+            }
+        }
+        genCoarser(layout, levels);
+    }
+    /**
+     * Constructor of a pyramid level. Each pixel is the average of 2 x 2 
+     * pixels of the finer level, clip ratio included.
+     * @param finer Finer pyramid level.
+     * @param layout Order of the pixels in memory, see CConfig.LAYOUT_*.
+     * @param levels Maximum number of pyramid levels including this one.
+     */
+    private CSource(CSource finer, int layout, int levels){
+        this.width = (finer.width + 1) >> 1;
+        this.height = (finer.height + 1) >> 1;
+        this.mode = finer.mode;
+        this.filter = finer.filter;
+        genOffsets(layout);
+        for(int y = 0; y < height; ++y){
+            int 
+                y0 = finer.y_off[2 * y], 
+                y1 = finer.y_off[Math.min(finer.height - 1, 2 * y + 1)];
+            for(int x = 0; x < width; ++x){
+                int 
+                    x0 = finer.x_off[2 * x], 
+                    x1 = finer.x_off[Math.min(finer.width - 1, 2 * x + 1)],
+                    p0 = finer.pixels[y0 + x0],
+                    p1 = finer.pixels[y0 + x1],
+                    p2 = finer.pixels[y1 + x0],
+                    p3 = finer.pixels[y1 + x1],
+                    /* Two channels at once, 16 bit each. */
+                    rb = (p0 & 0xff00ff) + (p1 & 0xff00ff) + 
+                        (p2 & 0xff00ff) + (p3 & 0xff00ff) + 0x20002,
+                    ag = ((p0 >>> 8) & 0xff00ff) + ((p1 >>> 8) & 0xff00ff) + 
+                        ((p2 >>> 8) & 0xff00ff) + ((p3 >>> 8) & 0xff00ff) + 
+                        0x20002;
+                pixels[y_off[y] + x_off[x]] = 
+                    ((rb >>> 2) & 0xff00ff) | ((ag << 6) & 0xff00ff00);
+            }
+        }
+        genCoarser(layout, levels);
+    }
+    /**
+     * Build the next pyramid level if requested & possible.
+     * @param layout Order of the pixels in memory, see CConfig.LAYOUT_*.
+     * @param levels Maximum number of pyramid levels including this one.
+     */
+    private void genCoarser(int layout, int levels){
+        if(1 < levels && (1 < width || 1 < height)){
+            this.coarser = new CSource(this, layout, levels - 1);
+        }
+    }
+    /**
+     * Provide the address tables & the pixel array.
+     * @param layout Order of the pixels in memory, see CConfig.LAYOUT_*.
+     */
+    private void genOffsets(int layout){
+        this.x_off = new int[width];
+        this.y_off = new int[height];
+        if(CConfig.LAYOUT_TILED == layout){
+            /* Tiles row by row, pixels of a tile in Z-order. */
+            int 
+                tiles = (width + TILE_SIZE - 1) >> TILE_BITS,
+                rows = (height + TILE_SIZE - 1) >> TILE_BITS,
+                area = TILE_SIZE * TILE_SIZE;
+            for(int x = 0; x < width; ++x){
+                x_off[x] = (x >> TILE_BITS) * area + 
+                    spread(x & (TILE_SIZE - 1));
+            }
+            for(int y = 0; y < height; ++y){
+                y_off[y] = (y >> TILE_BITS) * tiles * area + 
+                    (spread(y & (TILE_SIZE - 1)) << 1);
+            }
+            this.outside = tiles * rows * area;
+        }else{
+            /* Pixels row by row. */
+            for(int x = 0; x < width; ++x){
+                x_off[x] = x;
+            }
+            for(int y = 0; y < height; ++y){
+                y_off[y] = y * width;
+            }
+            this.outside = width * height;
+        }
+        /* Last pixel stays transparent black. */
+        this.pixels = new int[outside + 1];
+    }
+    /**
+     * Get function.
+     * @return Number of pyramid levels, this one included.
+     */
+    public int getLevels(){
+        return null == coarser ? 1 : 1 + coarser.getLevels();
+    }
+    /**
+     * Get function.
+     * @param n Pyramid level, <code>0</code> = this one.
+     * @return Picture with 1 / 2^n of the size.
+     */
+    public CSource getLevel(int n){
+        return 0 == n ? this : coarser.getLevel(n - 1);
+    }
+    /**
+     * Get function.
+     * @return Width of the picture.
+     */
+    public int getWidth(){
+        return this.width;
+    }
+    /**
+     * Get function.
+     * @return Height of the picture.
+     */
+    public int getHeight(){
+        return this.height;
+    }
+    /**
+     * Get function.
+     * @return ARGB pixels, alpha = clip ratio. Use index() to address them.
+     */
+    public int[] getPixels(){
+        return this.pixels;
+    }
+    /**
+     * Convert a coordinate to fixed point.
+     * @param v Coordinate.
+     * @return Fixed point coordinate, rounded down.
+     */
+    public static int fix(double v){
+        return (int)Math.floor(v * FIX_ONE);
+    }
+    /**
+     * Sample the picture at a fixed point position depending on the filter.
+     * The center of pixel <code>(x, y)</code> lies on the integer position
+     * <code>(x, y)</code>, like the result pixels of the renderer.
+     * @param u Fixed point column.
+     * @param v Fixed point row.
+     * @return ARGB pixel, alpha = clip ratio.
+     */
+    public int sample(int u, int v){
+        switch(filter){
+            case CConfig.FILTER_BILINEAR:
+                return bilinear(u, v);
+            case CConfig.FILTER_BICUBIC:
+                return bicubic(u, v);
+            default:
+                /* Nearest pixel center. */
+                return pixels[index(
+                    (u + FIX_HALF) >> FIX_BITS, (v + FIX_HALF) >> FIX_BITS)];
+        }
+    }
+    /**
+     * Interpolate between the four pixels around a position.
+     * @param u Fixed point column relative to the pixel centers.
+     * @param v Fixed point row relative to the pixel centers.
+     * @return ARGB pixel.
+     */
+    private int bilinear(int u, int v){
+        int
+            x = u >> FIX_BITS,
+            y = v >> FIX_BITS,
+            fx = (u >> (FIX_BITS - 8)) & 0xff,
+            fy = (v >> (FIX_BITS - 8)) & 0xff;
+        return lerp(
+            lerp(pixels[index(x, y)], pixels[index(x + 1, y)], fx),
+            lerp(pixels[index(x, y + 1)], pixels[index(x + 1, y + 1)], fx),
+            fy);
+    }
+    /**
+     * Weighted average of two ARGB pixels. Two channels are processed 
+     * together, each in 16 bit.
+     * @param p First pixel.
+     * @param q Second pixel.
+     * @param f Weight of the second pixel (0 ... 255).
+     * @return ARGB pixel.
+     */
+    private static int lerp(int p, int q, int f){
+        int
+            g = 256 - f,
+            rb = ((p & 0xff00ff) * g + (q & 0xff00ff) * f) >>> 8,
+            ag = (((p >>> 8) & 0xff00ff) * g + ((q >>> 8) & 0xff00ff) * f);
+        return (rb & 0xff00ff) | (ag & 0xff00ff00);
+    }
+    /**
+     * Interpolate between the 4 x 4 pixels around a position (Catmull-Rom).
+     * @param u Fixed point column relative to the pixel centers.
+     * @param v Fixed point row relative to the pixel centers.
+     * @return ARGB pixel.
+     */
+    private int bicubic(int u, int v){
+        int
+            x = (u >> FIX_BITS) - 1,
+            y = (v >> FIX_BITS) - 1,
+            fx = 4 * ((u >> (FIX_BITS - 8)) & 0xff),
+            fy = 4 * ((v >> (FIX_BITS - 8)) & 0xff),
+            a = 0, r = 0, g = 0, b = 0, p, w;
+        for(int j = 0; j < 4; ++j){
+            int ra = 0, rr = 0, rg = 0, rb = 0;
+            /* Horizontal pass of one row. */
+            for(int i = 0; i < 4; ++i){
+                p = pixels[index(x + i, y + j)];
+                w = CUBIC[fx + i];
+                ra += (p >>> 24) * w;
+                rr += ((p >> 16) & 0xff) * w;
+                rg += ((p >> 8) & 0xff) * w;
+                rb += (p & 0xff) * w;
+            }
+            /* Vertical pass. */
+            w = CUBIC[fy + j];
+            a += ((ra + CUBIC_HALF) >> CUBIC_SHIFT) * w;
+            r += ((rr + CUBIC_HALF) >> CUBIC_SHIFT) * w;
+            g += ((rg + CUBIC_HALF) >> CUBIC_SHIFT) * w;
+            b += ((rb + CUBIC_HALF) >> CUBIC_SHIFT) * w;
+        }
+        return (clamp(a) << 24) | (clamp(r) << 16) | (clamp(g) << 8) | 
+            clamp(b);
+    }
+    /**
+     * Round a fixed point channel value & limit it to 8 bit.
+     * @param c Channel value, bicubic fixed point.
+     * @return Channel value (0 ... 255).
+     */
+    private static int clamp(int c){
+        return Math.max(0, Math.min(255, (c + CUBIC_HALF) >> CUBIC_SHIFT));
+    }
+    /**
+     * Index of one pixel within the pixel array. Points outside the picture
+     * are mapped depending on the edge mode.
+     * @param x Column.
+     * @param y Row.
+     * @return Index, always valid.
+     */
+    public int index(int x, int y){
+        switch(mode){
+            case CConfig.EDGE_MIRROR:
+                x = mirror(x, width);
+                y = mirror(y, height);
+                break;
+            case CConfig.EDGE_TRANSPARENT:
+                if(0 > (x | y) || width <= x || height <= y){
+                    return outside;
+                }
+                break;
+            default:
+                x = Math.max(0, Math.min(width - 1, x));
+                y = Math.max(0, Math.min(height - 1, y));
+                break;
+        }
+        return y_off[y] + x_off[x];
+    }
+    /**
+     * Spread the bits of a coordinate to the even bit positions
+     * (Z-order within a tile).
+     * @param v Coordinate within a tile.
+     * @return Spread bits.
+     */
+    private static int spread(int v){
+        int s = 0;
+        for(int b = 0; b < TILE_BITS; ++b){
+            s |= ((v >> b) & 1) << (2 * b);
+        }
+        return s;
+    }
+    /**
+     * Mirror a coordinate at both borders, repeatedly.
+     * @param v Coordinate.
+     * @param n Size of the picture in the coordinate's direction.
+     * @return Coordinate <code>0 ... n - 1</code>.
+     */
+    private static int mirror(int v, int n){
+        int p = 2 * n;
+        v %= p;
+        if(0 > v){
+            v += p;
+        }
+        return v < n ? v : p - 1 - v;
+    }
+}
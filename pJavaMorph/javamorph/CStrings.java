@@ -69,6 +69,26 @@ public class CStrings {
     public static final String MESHDIR = HOME + APPDIR + "mesh" + SEP;
     /** Output directory path. */
     public static final String OUTPUTDIR = WORKDIR + "output" + SEP;
+    /** Directory path of the cached output pictures. */
+    public static final String CACHEDIR = WORKDIR + "cache" + SEP;
+    /** Directory path of the pictures to average. */
+    public static final String AVERAGEDIR = WORKDIR + "average" + SEP;
+    /** File assigning a weight to each picture to average. */
+    public static final String AVERAGE_WEIGHTS = AVERAGEDIR + "weights.props";
+    /** File name & path of the averaged picture. */
+    public static final String AVERAGE_OUTPUT = OUTPUTDIR + "average.jpg";
+    /** Directory path of the key pictures of a chain. */
+    public static final String CHAINDIR = WORKDIR + "chain" + SEP;
+    /** Directory path of the picture sequences. */
+    public static final String SEQUENCEDIR = WORKDIR + "sequence" + SEP;
+    /** Directory path of the left picture sequence. */
+    public static final String SEQUENCE_LEFT = SEQUENCEDIR + "left" + SEP;
+    /** Directory path of the right picture sequence. */
+    public static final String SEQUENCE_RIGHT = SEQUENCEDIR + "right" + SEP;
+    /** Directory path of the swept output pictures. */
+    public static final String SWEEPDIR = WORKDIR + "sweep" + SEP;
+    /** File listing the swept parameters & their values. */
+    public static final String SWEEP = WORKDIR + "sweep.props";
     /** Property file name & path. */
     public static final String PROPS = WORKDIR + "properties.props";
     /** Left input picture file name & path. */
@@ -108,11 +128,20 @@ public class CStrings {
      * @return Filename consisting of 3 numerical digits + extension.
      */
     public static String getOutput(int n){
+        return getOutput(OUTPUTDIR, n);
+    }
+    /**
+     * Compose the name of one result output file.
+     * @param dir Output directory path, separator at the end.
+     * @param n Number of the morph step.
+     * @return Filename consisting of 3 numerical digits + extension.
+     */
+    public static String getOutput(String dir, int n){
         String str_n = "" + n;
         while(3 > str_n.length()){
            str_n = "0" + str_n;
         }
-        return OUTPUTDIR + str_n + ".jpg";
+        return dir + str_n + ".jpg";
     }
     /**
      * Called if the application is called for the first time on one PC.
@@ -126,6 +155,12 @@ public class CStrings {
                 work = new File(WORKDIR),
                 input = new File(INPUTDIR),
                 output = new File(OUTPUTDIR),
+                cache = new File(CACHEDIR),
+                average = new File(AVERAGEDIR),
+                chain = new File(CHAINDIR),
+                sequence_left = new File(SEQUENCE_LEFT),
+                sequence_right = new File(SEQUENCE_RIGHT),
+                sweep = new File(SWEEPDIR),
                 polygon = new File(POLYGONDIR),
                 mesh = new File(MESHDIR),
                 help = new File(HELPDIR),
@@ -137,6 +172,12 @@ public class CStrings {
                     work.mkdir();
                     input.mkdir();
                     output.mkdir();
+                    cache.mkdir();
+                    average.mkdir();
+                    chain.mkdir();
+                    sequence_left.mkdirs();
+                    sequence_right.mkdirs();
+                    sweep.mkdir();
                     mesh.mkdir();
                     polygon.mkdir();
                     help.mkdir();
@@ -0,0 +1,283 @@
+package javamorph;
+
+import java.io.*;
+import java.util.*;
+import javax.swing.*;
+
+/**
+ * File belongs to javamorph (Merging of human-face-pictures).
+ * Copyright (C) 2009 - 2010  Claus Wimmer
+ * See file ".../help/COPYING" for details!
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA * 
+ *
+ * @version 1.5
+ * <br/>
+ * @author claus.erhard.wimmer@googlemail.com
+ * <br/>
+ * Program: JavaMorph.
+ * <br/>
+ * Class: CSweep.
+ * <br/>
+ * License: GPLv2.
+ * <br/>
+ * Description: Render the current picture pair with several combinations
+ * of parameters, each into a directory of its own.
+ * <br/>
+ * Hint: The sweep file lists the values of each parameter, e.g. 
+ * <code>SMOOTH_RADIUS = 5 10 20</code>. All combinations are rendered. 
+ * Parameters not listed keep their current value. Unknown parameters &
+ * values outside the ranges of the config dialog reject the whole file
+ * before anything is rendered. The pictures are decoded once at startup,
+ * the triangulation is generated once & the clip matrixes once per smooth
+ * radius, because the radius changes slowest. The sampled sources are 
+ * rebuilt only if radius, filter or mip mapping change.
+ */
+public class CSweep implements Runnable{
+    /** Parameters which can be swept, slowest changing first. */
+    public static final String PARAMS[] = {
+        "SMOOTH_RADIUS", 
+        "NUM_OF_MORPH_STEPS", 
+        "FILTER_MODE", 
+        "SUPERSAMPLING", 
+        "MIPMAP"
+    };
+    /** Minimum value of each parameter, like in the config dialog. */
+    private static final int MIN[] = {1, 1, CConfig.FILTER_NEAREST, 1, 0};
+    /** Maximum value of each parameter, like in the config dialog. */
+    private static final int MAX[] = {
+        CConfig.MAX_SMOOTH_RADIUS, 
+        CConfig.MAX_MORPH_STEPS, 
+        CConfig.FILTER_BICUBIC, 
+        CConfig.MAX_SUPERSAMPLING, 
+        1
+    };
+    /** Application's main class. */
+    private static CMain parent;
+    /** Progress bar, closed after the last combination. */
+    private static CProgress progress;
+    /** Left picture's display. */
+    private static CFrame left;
+    /** Right picture's display. */
+    private static CFrame right;
+    /** <code>true</code> if the user has aborted the sweep. */
+    private static volatile boolean f_break;
+    /**
+     * Initialize the sweep before starting the thread.
+     * @param parent Application's main class.
+     * @param progress Progress bar.
+     * @param left Left picture's display.
+     * @param right Right picture's display.
+     */
+    public static void sweep(CMain parent, CProgress progress, 
+            CFrame left, CFrame right){
+        CSweep.parent = parent;
+        CSweep.progress = progress;
+        CSweep.left = left;
+        CSweep.right = right;
+    }
+    /**
+     * Enable abort of the sweep forced by user.
+     */
+    public static void doBreak(){
+        f_break = true;
+    }
+    /**
+     * Thread API. Render all combinations of the sweep file.
+     */
+    public void run(){
+        f_break = false;
+        try{
+            sweep(CStrings.SWEEP);
+            progress.close();
+        }catch(Exception e){
+            System.err.println(e.getMessage());
+            e.printStackTrace();
+            progress.close();
+            JOptionPane.showMessageDialog(parent, "Can't render the sweep: " +
+                    e.getMessage() + "\nPlease see console output!");
+        }
+    }
+    /**
+     * Render all combinations of a sweep file into the sweep directory.
+     * The configuration is restored afterwards.
+     * @param path Path of the sweep file.
+     * @throws Exception If the file can't be read, contains invalid values
+     * or a picture can't be written.
+     */
+    public static void sweep(String path) throws Exception{
+        Properties props = new Properties();
+        FileInputStream in = new FileInputStream(path);
+        props.load(in);
+        in.close();
+        /* Reject the whole file before anything is rendered. */
+        for(Object key: props.keySet()){
+            if(!Arrays.asList(PARAMS).contains(key)){
+                throw new IllegalArgumentException(path + 
+                    ": Unknown parameter " + key + '.');
+            }
+        }
+        int 
+            values[][] = new int[PARAMS.length][],
+            saved[] = new int[PARAMS.length],
+            index[] = new int[PARAMS.length];
+        boolean listed[] = new boolean[PARAMS.length];
+        for(int p = 0; p < PARAMS.length; ++p){
+            saved[p] = get(p);
+            String s = props.getProperty(PARAMS[p]);
+            listed[p] = null != s;
+            values[p] = listed[p] ? parse(p, s) : new int[]{saved[p]};
+        }
+        try{
+            int radius = -1, filter = -1, mipmap = -1;
+            do{
+                /* 
+                 * Lock each combination on its own, so the preview waits for
+                 * one combination only.
+                 */
+                synchronized(CMorphOperator.class){
+                    if(0 > radius){
+                        /* Same meshes for all combinations. */
+                        CTriangulation.triangulate();
+                    }
+                    for(int p = 0; p < PARAMS.length; ++p){
+                        set(p, values[p][index[p]]);
+                    }
+                    boolean sources = false;
+                    if(radius != CConfig.SMOOTH_RADIUS){
+                        radius = CConfig.SMOOTH_RADIUS;
+                        left.genClip();
+                        right.genClip();
+                        sources = true;
+                    }
+                    if(filter != CConfig.FILTER_MODE || 
+                            mipmap != CConfig.MIPMAP){
+                        filter = CConfig.FILTER_MODE;
+                        mipmap = CConfig.MIPMAP;
+                        sources = true;
+                    }
+                    /* Steps & supersampling need nothing to be rebuilt. */
+                    if(sources){
+                        CMorphOperator.invalidate(true);
+                    }
+                    String dir = CStrings.SWEEPDIR + 
+                        getName(listed) + CStrings.SEP;
+                    new File(dir).mkdirs();
+                    CMorphOperator.morph(dir);
+                }
+            }while(!f_break && next(index, values));
+        }finally{
+            synchronized(CMorphOperator.class){
+                for(int p = 0; p < PARAMS.length; ++p){
+                    set(p, saved[p]);
+                }
+                left.genClip();
+                right.genClip();
+                CMorphOperator.invalidate(true);
+            }
+            /* The preview may have cached pictures of the sweep's values. */
+            CMorphEngine.clear();
+        }
+    }
+    /**
+     * Step to the next combination, the last parameter changes fastest.
+     * @param index Index of the current value of each parameter.
+     * @param values Values of each parameter.
+     * @return <code>false</code> after the last combination.
+     */
+    private static boolean next(int index[], int values[][]){
+        for(int p = index.length - 1; p >= 0; --p){
+            if(++index[p] < values[p].length){
+                return true;
+            }
+            index[p] = 0;
+        }
+        return false;
+    }
+    /**
+     * Name the directory of the current combination.
+     * @param listed <code>true</code> for each parameter of the sweep file.
+     * @return Listed parameters & their values, <code>default</code> if
+     * none.
+     */
+    private static String getName(boolean listed[]){
+        String name = "";
+        for(int p = 0; p < PARAMS.length; ++p){
+            if(listed[p]){
+                name += (0 < name.length() ? "," : "") + 
+                    PARAMS[p] + '=' + get(p);
+            }
+        }
+        return 0 < name.length() ? name : "default";
+    }
+    /**
+     * Parse the values of a parameter.
+     * @param p Index of the parameter.
+     * @param s Values separated by blanks or commas.
+     * @return The values.
+     * @throws IllegalArgumentException If a value is no number or outside
+     * the range of the config dialog.
+     */
+    private static int[] parse(int p, String s){
+        StringTokenizer st = new StringTokenizer(s, " ,\t");
+        int result[] = new int[st.countTokens()];
+        for(int i = 0; i < result.length; ++i){
+            String token = st.nextToken();
+            try{
+                result[i] = Integer.parseInt(token);
+            }catch(NumberFormatException e){
+                throw new IllegalArgumentException(PARAMS[p] + 
+                    ": No number " + token + '.');
+            }
+            if(MIN[p] > result[i] || MAX[p] < result[i]){
+                throw new IllegalArgumentException(PARAMS[p] + ": " + 
+                    result[i] + " is outside " + MIN[p] + " ... " + 
+                    MAX[p] + '.');
+            }
+        }
+        if(0 == result.length){
+            throw new IllegalArgumentException(PARAMS[p] + ": No values.");
+        }
+        return result;
+    }
+    /**
+     * Get function.
+     * @param p Index of the parameter.
+     * @return Current value of the parameter.
+     */
+    private static int get(int p){
+        switch(p){
+            case 0: return CConfig.SMOOTH_RADIUS;
+            case 1: return CConfig.NUM_OF_MORPH_STEPS;
+            case 2: return CConfig.FILTER_MODE;
+            case 3: return CConfig.SUPERSAMPLING;
+            default: return CConfig.MIPMAP;
+        }
+    }
+    /**
+     * Set function.
+     * @param p Index of the parameter.
+     * @param value New value of the parameter.
+     */
+    private static void set(int p, int value){
+        switch(p){
+            case 0: CConfig.SMOOTH_RADIUS = value; break;
+            case 1: CConfig.NUM_OF_MORPH_STEPS = value; break;
+            case 2: CConfig.FILTER_MODE = value; break;
+            case 3: CConfig.SUPERSAMPLING = value; break;
+            default: CConfig.MIPMAP = value; break;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package javamorph;
+
+import java.awt.*;
+import java.util.*;
+
+/**
+ * File belongs to javamorph (Merging of human-face-pictures).
+ * Copyright (C) 2009 - 2010  Claus Wimmer
+ * See file ".../help/COPYING" for details!
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA * 
+ *
+ * @version 1.5
+ * <br/>
+ * @author claus.erhard.wimmer@googlemail.com
+ * <br/>
+ * Program: JavaMorph.
+ * <br/>
+ * Class: CTransformTable.
+ * <br/>
+ * License: GPLv2.
+ * <br/>
+ * Description: Corner points & transformation matrixes of all triangles of
+ * the current step, stored in flat arrays.
+ * <br/>
+ * Hint: The six coefficients of one matrix are adjacent because the
+ * renderer fetches all of them for a triangle at once.
+ */
+public class CTransformTable {
+    /** Number of array entries per triangle. */
+    public static final int STRIDE = 6;
+    /** Number of triangles. */
+    private int size;
+    /** Left corners of each triangle: x0, y0, x1, y1, x2, y2. */
+    private int left_points[];
+    /** Right corners of each triangle: x0, y0, x1, y1, x2, y2. */
+    private int right_points[];
+    /** 
+     * Result corners of each triangle: x0, y0, x1, y1, x2, y2. Output 
+     * pixel units relative to the rendered area in fixed point 
+     * (CRasterizer.SUB_BITS).
+     */
+    private int result_points[];
+    /** Output pixels per result pixel, horizontal. */
+    private double scale_x = 1.0;
+    /** Output pixels per result pixel, vertical. */
+    private double scale_y = 1.0;
+    /** Output column of the first rendered column. */
+    private int offset_x;
+    /** Output row of the first rendered row. */
+    private int offset_y;
+    /** 
+     * Matrix from output to left point of each triangle:
+     * a_11, a_12, a_13, a_21, a_22, a_23. Output pixel units of the whole 
+     * output picture, so an area maps like the whole picture.
+     */
+    private double left[];
+    /** 
+     * Matrix from output to right point of each triangle:
+     * a_11, a_12, a_13, a_21, a_22, a_23. Output pixel units of the whole 
+     * output picture, so an area maps like the whole picture.
+     */
+    private double right[];
+    /** <code>false</code> if the result triangle is degenerated. */
+    private boolean valid[];
+    /**
+     * Constructor.
+     * @param left_triangles Triangulation of the left picture.
+     * @param right_triangles Triangulation of the right picture. Same order.
+     */
+    public CTransformTable(
+            Vector<CTriangle> left_triangles, 
+            Vector<CTriangle> right_triangles){
+        this.size = left_triangles.size();
+        this.left_points = getPoints(left_triangles);
+        this.right_points = getPoints(right_triangles);
+        this.result_points = new int[STRIDE * size];
+        this.left = new double[STRIDE * size];
+        this.right = new double[STRIDE * size];
+        this.valid = new boolean[size];
+    }
+    /**
+     * Place the result picture into the output picture.
+     * @param scale_x Output pixels per result pixel, horizontal.
+     * @param scale_y Output pixels per result pixel, vertical.
+     * @param offset_x Output column of the first rendered column.
+     * @param offset_y Output row of the first rendered row.
+     */
+    public void setView
+            (double scale_x, double scale_y, int offset_x, int offset_y){
+        this.scale_x = scale_x;
+        this.scale_y = scale_y;
+        this.offset_x = offset_x;
+        this.offset_y = offset_y;
+    }
+    /**
+     * Calculate the result corners & all matrixes of one step.
+     * @param ratio <code>0.0</code> = left mesh, <code>1.0</code> = right
+     * mesh.
+     */
+    public void update(double ratio){
+        int p;
+        for(int i = 0; i < result_points.length; i += 2){
+            /* Weighted average of the corners. */
+            p = (int)
+                (left_points[i] * (1.0 - ratio) + right_points[i] * ratio);
+            /* Pixel centers of result & output picture coincide. */
+            result_points[i] = CRasterizer.fix((p + 0.5) * scale_x - 0.5);
+            p = (int)(left_points[i + 1] * (1.0 - ratio) + 
+                right_points[i + 1] * ratio);
+            result_points[i + 1] = CRasterizer.fix((p + 0.5) * scale_y - 0.5);
+        }
+        for(int t = 0, k = 0; t < size; ++t, k += STRIDE){
+            valid[t] = 
+                CGeo.getTrafo(left_points, result_points, k, left, 
+                    CRasterizer.SUB_ONE) &&
+                CGeo.getTrafo(right_points, result_points, k, right, 
+                    CRasterizer.SUB_ONE);
+        }
+        /* Corners relative to the rendered area, whole pixels exactly. */
+        for(int i = 0; i < result_points.length; i += 2){
+            result_points[i] -= offset_x << CRasterizer.SUB_BITS;
+            result_points[i + 1] -= offset_y << CRasterizer.SUB_BITS;
+        }
+    }
+    /**
+     * Get function.
+     * @return Number of triangles.
+     */
+    public int size(){
+        return this.size;
+    }
+    /**
+     * Get function.
+     * @return Result corners, <code>STRIDE</code> entries per triangle.
+     */
+    public int[] getResultPoints(){
+        return this.result_points;
+    }
+    /**
+     * Get function.
+     * @return Left matrixes, <code>STRIDE</code> entries per triangle.
+     */
+    public double[] getLeft(){
+        return this.left;
+    }
+    /**
+     * Get function.
+     * @return Right matrixes, <code>STRIDE</code> entries per triangle.
+     */
+    public double[] getRight(){
+        return this.right;
+    }
+    /**
+     * Get function.
+     * @param t Triangle index.
+     * @return <code>false</code> if the result triangle has no area.
+     */
+    public boolean isValid(int t){
+        return this.valid[t];
+    }
+    /**
+     * Calculate the output pixels touched by one result triangle.
+     * @param t Triangle index.
+     * @return Bounding box in output pixel units.
+     */
+    public Rectangle getBounds(int t){
+        int 
+            k = STRIDE * t,
+            x_min = Integer.MAX_VALUE, 
+            y_min = Integer.MAX_VALUE, 
+            x_max = Integer.MIN_VALUE, 
+            y_max = Integer.MIN_VALUE;
+        for(int i = k; i < k + STRIDE; i += 2){
+            x_min = Math.min(x_min, result_points[i]);
+            x_max = Math.max(x_max, result_points[i]);
+            y_min = Math.min(y_min, result_points[i + 1]);
+            y_max = Math.max(y_max, result_points[i + 1]);
+        }
+        /* Back to whole output pixels. */
+        x_min = (x_min >> CRasterizer.SUB_BITS) + offset_x;
+        y_min = (y_min >> CRasterizer.SUB_BITS) + offset_y;
+        x_max = (x_max + CRasterizer.SUB_ONE - 1 >> CRasterizer.SUB_BITS) + 
+            offset_x;
+        y_max = (y_max + CRasterizer.SUB_ONE - 1 >> CRasterizer.SUB_BITS) + 
+            offset_y;
+        return new Rectangle
+            (x_min, y_min, x_max - x_min + 1, y_max - y_min + 1);
+    }
+    /**
+     * Copy the corners of all triangles into a flat array.
+     * @param triangles List of triangles.
+     * @return Corners, <code>STRIDE</code> entries per triangle.
+     */
+    private static int[] getPoints(Vector<CTriangle> triangles){
+        int points[] = new int[STRIDE * triangles.size()], k = 0;
+        for(CTriangle t: triangles){
+            for(Point p: t.getPoints()){
+                points[k++] = p.x;
+                points[k++] = p.y;
+            }
+        }
+        return points;
+    }
+}
@@ -59,6 +59,18 @@ public class CTriangulation{
     /** Result of the process is this triangulation. */
     private static final HashSet<CTriangle> triangles = 
         new HashSet<CTriangle>();
+    /** Receives the point indices of each found triangle. */
+    private static Vector<int[]> indices = CConfig.triangle_indices;
+    /** Copy of the left mesh, taken while holding the mesh lock. */
+    private static Point left_points[] = new Point[0];
+    /** Copy of the right mesh, taken while holding the mesh lock. */
+    private static Point right_points[] = new Point[0];
+    /** Indices of the triangles at each edge, key by <code>edgeKey()</code>. */
+    private static final HashMap<Long, TreeSet<Integer>> edge_triangles = 
+        new HashMap<Long, TreeSet<Integer>>();
+    /** Indices of the triangles at each mesh point. */
+    private static final HashMap<Integer, TreeSet<Integer>> point_triangles = 
+        new HashMap<Integer, TreeSet<Integer>>();
     /** Due to DELAUNAY. Circumcircle of the triangle to test. */
     private static double circle_radius;
     /** Center x of the circumcircle of the triangle to test. */
@@ -84,7 +96,11 @@ public class CTriangulation{
 long time = System.currentTimeMillis();
         System.out.println("Begin triangulation.");
         Point p, l, r;
+        indices = CConfig.triangle_indices;
         clear();
+        CConfig.left_triangles.clear();
+        CConfig.right_triangles.clear();
+        CConfig.result_triangles.clear();
         /* Bug fix "Array index out of bounds" in CTriangulation.add().*/
         order.clear();
         points.clear();
@@ -93,18 +109,328 @@ long time = System.currentTimeMillis();
             CConfig.left_image.getHeight() + CConfig.right_image.getHeight();
         width /= 2;
         height /= 2;
-        for(int i = 0; i < CConfig.left_mesh.size(); ++i)
+        snapshot();
+        for(int i = 0; i < left_points.length; ++i)
         {
-            l = CConfig.left_mesh.get(i);
-            r = CConfig.right_mesh.get(i);
+            l = left_points[i];
+            r = right_points[i];
             p = new Point((l.x + r.x) / 2, (l.y + r.y) / 2);
             points.add(p);
             order.add(p);
         }
         work();
-        debug();
+        /* Points are fetched ordered from left & right mesh them self. */
+        for(int c[]: CConfig.triangle_indices){
+            CConfig.left_triangles.add(new CTriangle(
+                left_points[c[0]], left_points[c[1]], left_points[c[2]]));
+            CConfig.right_triangles.add(new CTriangle(
+                right_points[c[0]], right_points[c[1]], right_points[c[2]]));
+        }
+        edge_triangles.clear();
+        point_triangles.clear();
+        for(int t = 0; t < CConfig.triangle_indices.size(); ++t){
+            link(t);
+        }
 System.out.println("End. Duration of triangulation = " + (System.currentTimeMillis() - time) + '.');
     }
+    /**
+     * Triangulate a mesh of its own, for example the weighted average of 
+     * several meshes. The triangulation of left & right mesh is kept.
+     * @param mesh Points to triangulate.
+     * @return Point indices of each triangle.
+     */
+    public static Vector<int[]> triangulate(Vector<Point> mesh){
+        /* update() works on the 50% mesh & its triangles. */
+        Vector<Point> saved_order = new Vector<Point>(order);
+        HashSet<CTriangle> saved = new HashSet<CTriangle>(triangles);
+        order.clear();
+        points.clear();
+        for(Point p: mesh){
+            p = new Point(p);
+            points.add(p);
+            order.add(p);
+        }
+        indices = new Vector<int[]>();
+        try{
+            work();
+            return indices;
+        }finally{
+            indices = CConfig.triangle_indices;
+            used.clear();
+            queue.clear();
+            order.clear();
+            order.addAll(saved_order);
+            points.clear();
+            points.addAll(saved_order);
+            triangles.clear();
+            triangles.addAll(saved);
+        }
+    }
+    /**
+     * Adapt the triangulation after some mesh points have been moved. Each
+     * moved point keeps its triangles as long as it stays within them, 
+     * then edges are flipped until the DELAUNAY condition holds again. The
+     * area covered by the changed triangles is the same before & after.
+     * @param moved Indices of the moved mesh points.
+     * @return Indices of the changed triangles, <code>null</code> if the
+     * triangulation must be generated again completely.
+     */
+    public static int[] update(int moved[]){
+        TreeSet<Integer> dirty = new TreeSet<Integer>();
+        snapshot();
+        if(order.size() != left_points.length){
+            return null;
+        }
+        for(int i: moved){
+            if(!move(i, dirty)){
+                return null;
+            }
+        }
+        /* Copy the new corners into the changed triangles. */
+        int result[] = new int[dirty.size()], k = 0;
+        for(int t: dirty){
+            int c[] = CConfig.triangle_indices.get(t);
+            CConfig.left_triangles.set(t, new CTriangle(
+                left_points[c[0]], left_points[c[1]], left_points[c[2]]));
+            CConfig.right_triangles.set(t, new CTriangle(
+                right_points[c[0]], right_points[c[1]], right_points[c[2]]));
+            result[k++] = t;
+        }
+        triangles.clear();
+        for(int c[]: CConfig.triangle_indices){
+            triangles.add(new CTriangle
+                (order.get(c[0]), order.get(c[1]), order.get(c[2])));
+        }
+        return result;
+    }
+    /**
+     * Move one point of the 50% mesh & flip the edges around it.
+     * @param i Index of the mesh point.
+     * @param dirty Receives the indices of the changed triangles.
+     * @return <code>false</code> if a local update is not possible.
+     */
+    private static boolean move(int i, Set<Integer> dirty){
+        Point 
+            m = order.get(i),
+            l = left_points[i],
+            r = right_points[i],
+            q = new Point((l.x + r.x) / 2, (l.y + r.y) / 2);
+        if(q.equals(m)){
+            return true;
+        }
+        if(points.contains(q)){
+            return false;
+        }
+        Vector<int[]> indices = CConfig.triangle_indices;
+        HashMap<Integer, Integer> link = new HashMap<Integer, Integer>();
+        Queue<int[]> edges = new ArrayDeque<int[]>();
+        TreeSet<Integer> star = point_triangles.get(i);
+        if(null == star){
+            return false;
+        }
+        for(int t: star){
+            int c[] = indices.get(t), a, b;
+            if(i == c[0]){
+                a = c[1];
+                b = c[2];
+            }else if(i == c[1]){
+                a = c[2];
+                b = c[0];
+            }else{
+                a = c[0];
+                b = c[1];
+            }
+            /* The point must stay on the same side of the opposite edge. */
+            if(0 >= side(a, b, m) * side(a, b, q)){
+                return false;
+            }
+            count(link, a);
+            count(link, b);
+            edges.add(new int[]{a, b});
+            dirty.add(t);
+        }
+        /* Points on the border may change the hull. */
+        if(link.isEmpty()){
+            return false;
+        }
+        for(int n: link.values()){
+            if(2 != n){
+                return false;
+            }
+        }
+        points.remove(m);
+        m.setLocation(q);
+        points.add(m);
+        return flip(edges, dirty);
+    }
+    /**
+     * Flip edges which violate the DELAUNAY condition, until none is left.
+     * @param edges Edges to test, each given by two point indices.
+     * @param dirty Receives the indices of the changed triangles.
+     * @return <code>false</code> if flipping doesn't come to an end.
+     */
+    private static boolean flip(Queue<int[]> edges, Set<Integer> dirty){
+        Vector<int[]> indices = CConfig.triangle_indices;
+        int limit = 16 * indices.size();
+        while(0 < edges.size()){
+            if(0 > --limit){
+                return false;
+            }
+            int e[] = edges.poll(), a = e[0], b = e[1];
+            TreeSet<Integer> pair = edge_triangles.get(edgeKey(a, b));
+            /* Border edge. */
+            if(null == pair || 2 != pair.size()){
+                continue;
+            }
+            int 
+                t1 = pair.first(),
+                t2 = pair.last(),
+                c = third(indices.get(t1), a, b), 
+                d = third(indices.get(t2), a, b);
+            /* Both triangles must form a convex quadrangle. */
+            if(!inCircle(a, b, c, d) || 0 <= side(c, d, a) * side(c, d, b)){
+                continue;
+            }
+            unlink(t1);
+            unlink(t2);
+            indices.set(t1, new int[]{c, d, a});
+            indices.set(t2, new int[]{c, d, b});
+            link(t1);
+            link(t2);
+            dirty.add(t1);
+            dirty.add(t2);
+            edges.add(new int[]{a, c});
+            edges.add(new int[]{c, b});
+            edges.add(new int[]{b, d});
+            edges.add(new int[]{d, a});
+        }
+        return true;
+    }
+    /**
+     * Count how often a point occurs.
+     * @param link Number of occurrences of each point.
+     * @param p Index of the point.
+     */
+    private static void count(Map<Integer, Integer> link, int p){
+        Integer n = link.get(p);
+        link.put(p, null == n ? 1 : n + 1);
+    }
+    /**
+     * Copy the points of both meshes, so the event thread may edit them 
+     * meanwhile.
+     */
+    private static void snapshot(){
+        synchronized(CConfig.mesh_lock){
+            left_points = new Point[CConfig.left_mesh.size()];
+            right_points = new Point[CConfig.right_mesh.size()];
+            for(int i = 0; i < left_points.length; ++i){
+                left_points[i] = new Point(CConfig.left_mesh.get(i));
+                right_points[i] = new Point(CConfig.right_mesh.get(i));
+            }
+        }
+    }
+    /**
+     * Add a triangle to the triangles at its edges & points.
+     * @param t Index of the triangle.
+     */
+    private static void link(int t){
+        int c[] = CConfig.triangle_indices.get(t);
+        for(int e = 0; e < 3; ++e){
+            Long key = edgeKey(c[e], c[(e + 1) % 3]);
+            TreeSet<Integer> set = edge_triangles.get(key);
+            if(null == set){
+                edge_triangles.put(key, set = new TreeSet<Integer>());
+            }
+            set.add(t);
+            set = point_triangles.get(c[e]);
+            if(null == set){
+                point_triangles.put(c[e], set = new TreeSet<Integer>());
+            }
+            set.add(t);
+        }
+    }
+    /**
+     * Remove a triangle from the triangles at its edges & points.
+     * @param t Index of the triangle.
+     */
+    private static void unlink(int t){
+        int c[] = CConfig.triangle_indices.get(t);
+        for(int e = 0; e < 3; ++e){
+            edge_triangles.get(edgeKey(c[e], c[(e + 1) % 3])).remove(t);
+            point_triangles.get(c[e]).remove(t);
+        }
+    }
+    /**
+     * Key of an edge, independent of its direction.
+     * @param i First mesh point index.
+     * @param j Second mesh point index.
+     * @return Key.
+     */
+    public static Long edgeKey(int i, int j){
+        return ((long)Math.min(i, j) << 32) | Math.max(i, j);
+    }
+    /**
+     * Seek the corner which doesn't belong to an edge.
+     * @param c Point indices of the triangle.
+     * @param a First point of the edge.
+     * @param b Second point of the edge.
+     * @return Index of the third point.
+     */
+    private static int third(int c[], int a, int b){
+        for(int p: c){
+            if(a != p && b != p){
+                return p;
+            }
+        }
+        return -1;
+    }
+    /**
+     * Side of a point relating to a line through two points of the 50% 
+     * mesh.
+     * @param a Index of the first point of the line.
+     * @param b Index of the second point of the line.
+     * @param p Point.
+     * @return Positive, negative or zero if on the line.
+     */
+    private static long side(int a, int b, Point p){
+        Point pa = order.get(a), pb = order.get(b);
+        return Long.signum((long)(pb.x - pa.x) * (p.y - pa.y) - 
+            (long)(pb.y - pa.y) * (p.x - pa.x));
+    }
+    /**
+     * Side of a point relating to a line through two points of the 50% 
+     * mesh.
+     * @param a Index of the first point of the line.
+     * @param b Index of the second point of the line.
+     * @param p Index of the point.
+     * @return Positive, negative or zero if on the line.
+     */
+    private static long side(int a, int b, int p){
+        return side(a, b, order.get(p));
+    }
+    /**
+     * DELAUNAY test of two triangles sharing an edge.
+     * @param a First point of the edge.
+     * @param b Second point of the edge.
+     * @param c Third point of the first triangle.
+     * @param d Third point of the second triangle.
+     * @return <code>true</code> if D is strictly within the circumcircle of 
+     * A, B & C.
+     */
+    private static boolean inCircle(int a, int b, int c, int d){
+        Point pa = order.get(a), pb = order.get(b), 
+            pc = order.get(c), pd = order.get(d);
+        long
+            adx = pa.x - pd.x, ady = pa.y - pd.y,
+            bdx = pb.x - pd.x, bdy = pb.y - pd.y,
+            cdx = pc.x - pd.x, cdy = pc.y - pd.y,
+            det = 
+                (adx * adx + ady * ady) * (bdx * cdy - cdx * bdy) -
+                (bdx * bdx + bdy * bdy) * (adx * cdy - cdx * ady) +
+                (cdx * cdx + cdy * cdy) * (adx * bdy - bdx * ady);
+        /* Sign of the determinant depends on the orientation of A, B, C. */
+        return 0 < Long.signum(det) * side(a, b, c);
+    }
     /**
      * Clear all permanent date of the collections.
      */
@@ -112,9 +438,7 @@ System.out.println("End. Duration of triangulation = " + (System.currentTimeMill
         used.clear();
         triangles.clear();
         queue.clear();
-        CConfig.left_triangles.clear();
-        CConfig.right_triangles.clear();
-        CConfig.result_triangles.clear();
+        indices.clear();
     }
     /**
      * Calculate the triangles.
@@ -156,22 +480,17 @@ System.out.println("End. Duration of triangulation = " + (System.currentTimeMill
         }
     }
     /**
-     * Add one left & one right triangle.
-     * Points are fetched ordered from left & right mesh them self.
+     * Add the point indices of one triangle.
      *
      * @param temp Input triangle.
      */
     private static void add(CTriangle temp){
         if(triangles.add(temp)){
-            Point 
-                l0 = CConfig.left_mesh.get(indexOf(temp.getPoints()[0])),
-                l1 = CConfig.left_mesh.get(indexOf(temp.getPoints()[1])),
-                l2 = CConfig.left_mesh.get(indexOf(temp.getPoints()[2])),
-                r0 = CConfig.right_mesh.get(indexOf(temp.getPoints()[0])),
-                r1 = CConfig.right_mesh.get(indexOf(temp.getPoints()[1])),
-                r2 = CConfig.right_mesh.get(indexOf(temp.getPoints()[2]));
-            CConfig.left_triangles.add(new CTriangle(l0, l1, l2));
-            CConfig.right_triangles.add(new CTriangle(r0, r1, r2));
+            int
+                i0 = indexOf(temp.getPoints()[0]),
+                i1 = indexOf(temp.getPoints()[1]),
+                i2 = indexOf(temp.getPoints()[2]);
+            indices.add(new int[]{i0, i1, i2});
         }
     }
     /**
@@ -261,39 +580,50 @@ System.out.println("End. Duration of triangulation = " + (System.currentTimeMill
     }
     /**
      * Write left right and 50% triangulation into the debug directory.
+     * Drawing & writing is done in the background on copies of the
+     * triangle lists. Call after <code>triangulate()</code>.
      */
-    private static void debug(){
-        BufferedImage image;
-        try{
-            image = new BufferedImage(CConfig.left_image.getWidth(), 
-                    CConfig.left_image.getHeight(),
-                    BufferedImage.TYPE_INT_RGB);
-            for(CTriangle t: CConfig.left_triangles){
-                t.debug(image);
-            }
-            ImageIO.write(image, "png", new File(CStrings.LEFT_TRI));
-            image = new BufferedImage(
-                    CConfig.right_image.getWidth(),
-                    CConfig.right_image.getHeight(),
-                    BufferedImage.TYPE_INT_RGB
-                    );
-            for(CTriangle t: CConfig.right_triangles){
-                t.debug(image);
-            }
-            ImageIO.write(image, "png", new File(CStrings.RIGHT_TRI));
-
-            image = new BufferedImage(
-                    width,
-                    height,
-                    BufferedImage.TYPE_INT_RGB
-                    );
-            for(CTriangle t: triangles){
-                t.debug(image);
+    public static void debug(){
+        final CTriangle
+            left[] = CConfig.left_triangles.toArray(new CTriangle[0]),
+            right[] = CConfig.right_triangles.toArray(new CTriangle[0]),
+            middle[] = triangles.toArray(new CTriangle[0]);
+        final int 
+            lw = CConfig.left_image.getWidth(),
+            lh = CConfig.left_image.getHeight(),
+            rw = CConfig.right_image.getWidth(),
+            rh = CConfig.right_image.getHeight(),
+            mw = width,
+            mh = height;
+        CArtifactWriter.post(new Runnable(){
+            public void run(){
+                try{
+                    ImageIO.write(draw(left, lw, lh), "png", 
+                            new File(CStrings.LEFT_TRI));
+                    ImageIO.write(draw(right, rw, rh), "png", 
+                            new File(CStrings.RIGHT_TRI));
+                    ImageIO.write(draw(middle, mw, mh), "png", 
+                            new File(CStrings.MIDDLE_TRI));
+                }catch(Exception e){
+                    System.out.println("Can't debug triangles.");
+                    e.printStackTrace();
+                }
             }
-            ImageIO.write(image, "png", new File(CStrings.MIDDLE_TRI));
-        }catch(Exception e){
-            System.out.println("Can't debug triangles.");
-            e.printStackTrace();
+        });
+    }
+    /**
+     * Draw triangles into a new picture.
+     * @param list Triangles to draw.
+     * @param w Width of the picture.
+     * @param h Height of the picture.
+     * @return The picture.
+     */
+    private static BufferedImage draw(CTriangle list[], int w, int h){
+        BufferedImage image = 
+            new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        for(CTriangle t: list){
+            t.debug(image);
         }
+        return image;
     }
  }
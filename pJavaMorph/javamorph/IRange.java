@@ -25,28 +25,19 @@ package javamorph;
  * <br/>
  * Program: JavaMorph.
  * <br/>
- * Class: CTransform.
+ * Class: IRange.
  * <br/>
  * License: GPLv2.
  * <br/>
- * Description: Affine transform matrix.
+ * Description: Piece of work which can be split into index ranges.
  * <br/>
- * Hint: Example: a_rc -> r = row_in_matrix, c = column in matrix. Row != Column
- * because inversion is not necessary.
- * <br/>
- * Usage: M * P' = P (M...Matrix, P'...Result Point, P...Origin Point).
+ * Hint: Executed by CParallel, one range per thread.
  */
-public class CTransform {
-    /** Matrix factor. Row = 1, Column = 1.*/
-    double a_11;
-    /** Matrix factor. Row = 1, Column = 2.*/
-    double a_12;
-    /** Matrix factor. Row = 1, Column = 3.*/
-    double a_13;
-    /** Matrix factor. Row = 2, Column = 1.*/
-    double a_21;
-    /** Matrix factor. Row = 2, Column = 2.*/
-    double a_22;
-    /** Matrix factor. Row = 2, Column = 3.*/
-    double a_23;
+public interface IRange {
+    /**
+     * Process a part of the whole index range.
+     * @param from First index to process (inclusive).
+     * @param to Last index to process (exclusive).
+     */
+    public void run(int from, int to);
 }